@@ -0,0 +1,95 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes allocated per processed event in steady state, which must be zero.
+ * <p>
+ * Usage: <code>java -cp benchmarks.jar me.bvn13.fsm.benchmarks.AllocationBenchmark [max bytes per event]</code>
+ * runs the benchmark with GC profiler and exits with non-zero code if <code>gc.alloc.rate.norm</code> exceeds
+ * the threshold (1 byte per event by default, leaving room for the measurement noise).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AllocationBenchmark {
+
+    private static final Integer EVENT = 0;
+    private static final String ALLOCATION_RATE = "gc.alloc.rate.norm";
+
+    @Param({"1", "16"})
+    public int fanOut;
+
+    private SimpleFsm<Integer> fsm;
+
+    @Setup
+    public void setUp() {
+        fsm = Machines.ring(32, fanOut).create();
+    }
+
+    @Benchmark
+    public Object process() {
+        fsm.process(EVENT);
+        return fsm.getCurrentState();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        double threshold = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(AllocationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+        boolean failed = results.isEmpty();
+        for (RunResult result : results) {
+            Result<?> allocated = allocationRate(result);
+            String params = "fanOut=" + result.getParams().getParam("fanOut");
+            if (allocated == null) {
+                System.err.printf("%s: no allocation rate reported by GC profiler%n", params);
+                failed = true;
+            } else if (allocated.getScore() > threshold) {
+                System.err.printf("%s: %.3f bytes allocated per event, expected at most %.3f%n",
+                        params, allocated.getScore(), threshold);
+                failed = true;
+            } else {
+                System.out.printf("%s: %.3f bytes allocated per event%n", params, allocated.getScore());
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static Result<?> allocationRate(RunResult result) {
+        for (String key : result.getSecondaryResults().keySet()) {
+            if (key.endsWith(ALLOCATION_RATE)) {
+                return result.getSecondaryResults().get(key);
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,68 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second: a backlog of events fed one by one via <code>process</code> vs <code>processAll</code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BatchProcessingBenchmark {
+
+    private static final int BATCH = 1024;
+
+    private Integer[] events;
+    private List<Integer> eventList;
+    private SimpleFsm<Integer> fsm;
+
+    @Setup
+    public void setUp() {
+        events = new Integer[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            events[i] = i % 4;
+        }
+        eventList = Arrays.asList(events);
+        fsm = Machines.ring(64, 4).create();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object oneByOne() {
+        for (Integer event : events) {
+            fsm.process(event);
+        }
+        return fsm.getCurrentState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int processAllArray() {
+        return fsm.processAll(events, 0, BATCH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int processAllIterable() {
+        return fsm.processAll(eventList);
+    }
+
+}
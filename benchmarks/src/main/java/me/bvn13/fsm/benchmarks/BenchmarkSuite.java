@@ -0,0 +1,33 @@
+package me.bvn13.fsm.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ResultFormatType;
+
+/**
+ * Runs benchmarks of the engine's hot paths and saves results in CSV to be compared between releases
+ * with {@link CompareResults}.
+ * <p>
+ * Arguments: result file (<code>target/jmh-result.csv</code> by default) and optionally regular expression
+ * of benchmarks to run.
+ */
+public final class BenchmarkSuite {
+
+    static final String HOT_PATHS = "(TransitionLookup|GuardEvaluation|TriggerIndex|Builder|Rehydration|Dispatch|BatchProcessing|Instrumentation|FlightRecorder|CompiledDispatch|Hierarchy)Benchmark";
+
+    private BenchmarkSuite() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String result = args.length > 0 ? args[0] : "target/jmh-result.csv";
+        String include = args.length > 1 ? args[1] : HOT_PATHS;
+        new Runner(new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.CSV)
+                .result(result)
+                .build())
+                .run();
+    }
+
+}
@@ -0,0 +1,51 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microseconds to build a machine with {@link me.bvn13.fsm.FsmBuilder}: declaring states and transitions and
+ * compiling them into {@link FsmDefinition}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BuilderBenchmark {
+
+    @Param({"8", "64", "512"})
+    public int states;
+
+    @Param({"4"})
+    public int fanOut;
+
+    @Benchmark
+    public FsmDefinition<SimpleFsm<Integer>, Integer> ring() {
+        return Machines.ring(states, fanOut).define();
+    }
+
+    @Benchmark
+    public FsmDefinition<SimpleFsm<Integer>, Integer> triggeredRing() {
+        return Machines.triggeredRing(states, fanOut).define();
+    }
+
+    @Benchmark
+    public FsmDefinition<SimpleFsm<String>, String> session() {
+        return Machines.session(states).define();
+    }
+
+}
@@ -0,0 +1,116 @@
+package me.bvn13.fsm.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two CSV results of JMH (<code>-rf csv</code> or {@link BenchmarkSuite}), e.g. of two releases.
+ * <p>
+ * Arguments: baseline result, current result and optionally allowed regression in percents (10 by default).
+ * Exits with code 1 if any benchmark of the current result is slower than the baseline by more than allowed:
+ * lower throughput, or higher time for other modes.
+ */
+public final class CompareResults {
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults <baseline.csv> <current.csv> [allowed regression, %]");
+            System.exit(2);
+        }
+        double allowed = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, Score> baseline = read(args[0]);
+        Map<String, Score> current = read(args[1]);
+        boolean regressed = false;
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score after = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-100s %14s %14.3f %s%n", entry.getKey(), "-", after.value, after.unit);
+                continue;
+            }
+            double change = (after.value - before.value) / before.value * 100;
+            double regression = after.throughput ? -change : change;
+            boolean failed = regression > allowed;
+            regressed |= failed;
+            System.out.printf("%-100s %14.3f %14.3f %s %+7.1f%%%s%n", entry.getKey(), before.value, after.value,
+                    after.unit, change, failed ? "  REGRESSION" : "");
+        }
+        if (regressed) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> read(String file) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        List<String> header = split(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int mode = header.indexOf("Mode");
+        int threads = header.indexOf("Threads");
+        int score = header.indexOf("Score");
+        int unit = header.indexOf("Unit");
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            List<String> columns = split(line);
+            StringBuilder key = new StringBuilder(columns.get(benchmark))
+                    .append(" ").append(columns.get(mode))
+                    .append(" t=").append(columns.get(threads));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && !columns.get(i).isEmpty()) {
+                    key.append(" ").append(header.get(i).substring("Param: ".length())).append("=").append(columns.get(i));
+                }
+            }
+            scores.put(key.toString(), new Score(Double.parseDouble(columns.get(score)), columns.get(unit),
+                    "thrpt".equals(columns.get(mode))));
+        }
+        return scores;
+    }
+
+    private static List<String> split(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    column.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                columns.add(column.toString());
+                column.setLength(0);
+            } else {
+                column.append(c);
+            }
+        }
+        columns.add(column.toString());
+        return columns;
+    }
+
+    private static final class Score {
+        private final double value;
+        private final String unit;
+        private final boolean throughput;
+
+        private Score(double value, String unit, boolean throughput) {
+            this.value = value;
+            this.unit = unit;
+            this.throughput = throughput;
+        }
+    }
+
+}
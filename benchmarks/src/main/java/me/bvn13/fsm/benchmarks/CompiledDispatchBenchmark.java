@@ -0,0 +1,62 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.ResolutionPolicy;
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nanoseconds per event: choosing the next state by the tables vs by selectors compiled with
+ * {@link FsmBuilder#withCompiledDispatch()}, on ring machines checked until the first match
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CompiledDispatchBenchmark {
+
+    @Param({"1", "4"})
+    public int fanOut;
+
+    private Integer event;
+    private SimpleFsm<Integer> interpreted;
+    private SimpleFsm<Integer> compiled;
+
+    @Setup
+    public void setUp() {
+        event = fanOut - 1;
+        interpreted = ring().create();
+        compiled = ring().withCompiledDispatch().create();
+    }
+
+    @Benchmark
+    public Object interpreted() {
+        interpreted.process(event);
+        return interpreted.getCurrentState();
+    }
+
+    @Benchmark
+    public Object compiled() {
+        compiled.process(event);
+        return compiled.getCurrentState();
+    }
+
+    private FsmBuilder<SimpleFsm<Integer>, Integer, ?> ring() {
+        return Machines.ring(64, fanOut).withResolutionPolicy(ResolutionPolicy.FIRST_MATCH);
+    }
+
+}
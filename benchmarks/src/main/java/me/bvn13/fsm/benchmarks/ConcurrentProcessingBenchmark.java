@@ -0,0 +1,77 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.ConcurrentFsm;
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second sent to a single FSM by 3 threads while the 4th one monitors current state:
+ * lock-free {@link ConcurrentFsm} vs {@link SimpleFsm} guarded by <code>synchronized</code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Group)
+public class ConcurrentProcessingBenchmark {
+
+    private static final Integer EVENT = 0;
+
+    private ConcurrentFsm<Integer> concurrent;
+    private SimpleFsm<Integer> synchronizedFsm;
+
+    @Setup
+    public void setUp() {
+        concurrent = Machines.<ConcurrentFsm<Integer>>ring(ConcurrentFsm::new, 64, 4, 0).create();
+        synchronizedFsm = Machines.ring(64, 4).create();
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(3)
+    public Object concurrentProcess() {
+        concurrent.process(EVENT);
+        return concurrent;
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(1)
+    public Object concurrentRead() {
+        return concurrent.getCurrentState();
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(3)
+    public Object synchronizedProcess() {
+        synchronized (synchronizedFsm) {
+            synchronizedFsm.process(EVENT);
+        }
+        return synchronizedFsm;
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(1)
+    public Object synchronizedRead() {
+        synchronized (synchronizedFsm) {
+            return synchronizedFsm.getCurrentState();
+        }
+    }
+
+}
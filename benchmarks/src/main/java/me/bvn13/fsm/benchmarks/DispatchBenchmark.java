@@ -0,0 +1,73 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second processed by 4 threads, each one sending events to random instances of its own population,
+ * all instances sharing one definition. Compare with <code>-t 1</code> to see how processing scales with threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(4)
+public class DispatchBenchmark {
+
+    private static final Integer EVENT = 0;
+
+    @State(Scope.Benchmark)
+    public static class Definition {
+
+        FsmDefinition<SimpleFsm<Integer>, Integer> definition;
+
+        @Setup
+        public void setUp() {
+            definition = Machines.ring(64, 4).define();
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class Population {
+
+        @Param({"1000", "100000"})
+        public int instances;
+
+        SimpleFsm<Integer>[] fsms;
+
+        @Setup
+        @SuppressWarnings("unchecked")
+        public void setUp(Definition shared) {
+            fsms = new SimpleFsm[instances];
+            for (int i = 0; i < instances; i++) {
+                fsms[i] = shared.definition.create();
+            }
+        }
+
+    }
+
+    @Benchmark
+    public Object dispatch(Population population) {
+        SimpleFsm<Integer> fsm = population.fsms[ThreadLocalRandom.current().nextInt(population.instances)];
+        fsm.process(EVENT);
+        return fsm.getCurrentState();
+    }
+
+}
@@ -0,0 +1,53 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nanoseconds per event: FSM without flight recorder vs FSM recording its last 64 transitions
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class FlightRecorderBenchmark {
+
+    private static final Integer EVENT = 0;
+
+    private SimpleFsm<Integer> plain;
+    private SimpleFsm<Integer> recording;
+
+    @Setup
+    public void setUp() {
+        plain = Machines.ring(64, 4).create();
+        recording = Machines.ring(64, 4)
+                .withFlightRecorder(64)
+                .create();
+    }
+
+    @Benchmark
+    public Object disabled() {
+        plain.process(EVENT);
+        return plain.getCurrentState();
+    }
+
+    @Benchmark
+    public Object recording() {
+        recording.process(EVENT);
+        return recording.getCurrentState();
+    }
+
+}
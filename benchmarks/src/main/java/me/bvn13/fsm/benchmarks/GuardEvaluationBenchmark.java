@@ -0,0 +1,57 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.ResolutionPolicy;
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second on states with expensive guards: {@link ResolutionPolicy#STRICT} checks all of them,
+ * {@link ResolutionPolicy#FIRST_MATCH} stops at the first appropriate transition
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GuardEvaluationBenchmark {
+
+    private static final Integer EVENT = 0;
+
+    @Param({"4", "16"})
+    public int fanOut;
+
+    @Param({"100"})
+    public long guardCost;
+
+    @Param({"STRICT", "FIRST_MATCH"})
+    public ResolutionPolicy policy;
+
+    private SimpleFsm<Integer> fsm;
+
+    @Setup
+    public void setUp() {
+        fsm = Machines.ring(32, fanOut, guardCost)
+                .withResolutionPolicy(policy)
+                .create();
+    }
+
+    @Benchmark
+    public Object process() {
+        fsm.process(EVENT);
+        return fsm.getCurrentState();
+    }
+
+}
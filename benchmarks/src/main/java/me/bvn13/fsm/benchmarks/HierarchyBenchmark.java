@@ -0,0 +1,97 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.StateBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nanoseconds per event on a ring of states sharing transitions out of the ring: the shared transitions copied
+ * onto every state vs declared once on the state containing the ring
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class HierarchyBenchmark {
+
+    @Param({"1", "8"})
+    public int shared;
+
+    private final Integer event = 0;
+    private SimpleFsm<Integer> flat;
+    private SimpleFsm<Integer> nested;
+
+    @Setup
+    public void setUp() {
+        flat = ring(false).create();
+        nested = ring(true).create();
+    }
+
+    @Benchmark
+    public Object flat() {
+        flat.process(event);
+        return flat.getCurrentState();
+    }
+
+    @Benchmark
+    public Object nested() {
+        nested.process(event);
+        return nested.getCurrentState();
+    }
+
+    private FsmBuilder<SimpleFsm<Integer>, Integer, ?> ring(boolean nesting) {
+        FsmBuilder<SimpleFsm<Integer>, Integer, ?> builder = Fsm
+                .<SimpleFsm<Integer>, Integer>from(SimpleFsm::new)
+                .withStates();
+        if (nesting) {
+            builder = leaving(builder.state("lifecycle")).end();
+        }
+        for (int i = 0; i < 64; i++) {
+            StateBuilder<SimpleFsm<Integer>, Integer, ?> state = i == 0 ? builder.from("s0") : builder.state("s" + i);
+            if (nesting) {
+                state = state.withParent("lifecycle");
+            } else {
+                state = leaving(state);
+            }
+            builder = state
+                    .withTransition()
+                        .to("s" + (i + 1) % 64)
+                        .checking((fsm, e) -> e == 0)
+                    .endTransition()
+                    .end();
+        }
+        for (int k = 0; k < shared; k++) {
+            builder = builder.finish("left" + k).end();
+        }
+        return builder;
+    }
+
+    private StateBuilder<SimpleFsm<Integer>, Integer, ?> leaving(StateBuilder<SimpleFsm<Integer>, Integer, ?> state) {
+        for (int k = 0; k < shared; k++) {
+            int exit = -1 - k;
+            state = state
+                    .withTransition()
+                        .to("left" + k)
+                        .checking((fsm, e) -> e == exit)
+                    .endTransition();
+        }
+        return state;
+    }
+
+}
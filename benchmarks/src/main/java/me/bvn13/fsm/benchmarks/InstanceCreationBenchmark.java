@@ -0,0 +1,53 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instances per second: building the whole machine for every session vs creating a session from shared definition.
+ * <p>
+ * Run with <code>-prof gc</code>: <code>gc.alloc.rate.norm</code> is the number of bytes allocated per created
+ * instance. See {@link InstanceFootprint} for the retained size of an instance.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class InstanceCreationBenchmark {
+
+    @Param({"2", "16"})
+    public int states;
+
+    private FsmDefinition<SimpleFsm<String>, String> definition;
+
+    @Setup
+    public void setUp() {
+        definition = Machines.session(states).define();
+    }
+
+    @Benchmark
+    public SimpleFsm<String> builderPerInstance() {
+        return Machines.session(states).create();
+    }
+
+    @Benchmark
+    public SimpleFsm<String> sharedDefinition() {
+        return definition.create();
+    }
+
+}
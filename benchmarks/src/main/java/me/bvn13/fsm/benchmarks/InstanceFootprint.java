@@ -0,0 +1,42 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Prints retained memory per FSM instance: machines built one by one vs instances of shared definition
+ * <p>
+ * Usage: <code>java -cp benchmarks.jar me.bvn13.fsm.benchmarks.InstanceFootprint [states] [instances]</code>
+ */
+public final class InstanceFootprint {
+
+    private InstanceFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int states = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+
+        Object[] built = new Object[count];
+        for (int i = 0; i < count; i++) {
+            built[i] = Machines.session(states).create();
+        }
+
+        FsmDefinition<SimpleFsm<String>, String> definition = Machines.session(states).define();
+        Object[] shared = new Object[count];
+        for (int i = 0; i < count; i++) {
+            shared[i] = definition.create();
+        }
+
+        long builtSize = GraphLayout.parseInstance(built).totalSize();
+        long sharedSize = GraphLayout.parseInstance(shared).subtract(GraphLayout.parseInstance(definition)).totalSize();
+
+        System.out.printf("States: %d, instances: %d%n", states + 2, count);
+        System.out.printf("Built per instance: %d bytes/instance%n", builtSize / count);
+        System.out.printf("Shared definition:  %d bytes/instance (+ %d bytes of definition once)%n",
+                sharedSize / count,
+                GraphLayout.parseInstance(definition).totalSize());
+    }
+
+}
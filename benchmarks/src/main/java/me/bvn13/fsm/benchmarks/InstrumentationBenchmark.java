@@ -0,0 +1,54 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.metrics.FsmMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nanoseconds per event: FSM without instrumentation vs FSM measured by {@link FsmMetrics}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class InstrumentationBenchmark {
+
+    private static final Integer EVENT = 0;
+
+    private SimpleFsm<Integer> plain;
+    private SimpleFsm<Integer> instrumented;
+
+    @Setup
+    public void setUp() {
+        plain = Machines.ring(64, 4).create();
+        instrumented = Machines.ring(64, 4)
+                .withInstrumentation(new FsmMetrics("ring"))
+                .create();
+    }
+
+    @Benchmark
+    public Object disabled() {
+        plain.process(EVENT);
+        return plain.getCurrentState();
+    }
+
+    @Benchmark
+    public Object fsmMetrics() {
+        instrumented.process(EVENT);
+        return instrumented.getCurrentState();
+    }
+
+}
@@ -0,0 +1,100 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.journal.FsmJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of journaling transitions and rebuilding states from the journal of a million transitions of 100 000 keys:
+ * restoring from records vs processing the events again
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JournalBenchmark {
+
+    private static final int KEYS = 100_000;
+    private static final int TRANSITIONS = 1_000_000;
+    private static final Integer EVENT = 0;
+
+    private FsmDefinition<SimpleFsm<Integer>, Integer> definition;
+    private Path directory;
+    private FsmJournal journal;
+    private SimpleFsm<Integer> fsm;
+    private long key;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        definition = Machines.ring(64, 4).define();
+        directory = Files.createTempDirectory("fsm-journal");
+        journal = new FsmJournal(directory);
+        SimpleFsm<Integer>[] instances = new SimpleFsm[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            instances[i] = definition.create();
+        }
+        for (int i = 0; i < TRANSITIONS; i++) {
+            journal.process(i % KEYS, instances[i % KEYS], EVENT);
+        }
+        journal.commit();
+        fsm = definition.create();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long processAndAppend() {
+        return journal.process(key++ % KEYS, fsm, EVENT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int restore(Blackhole blackhole) throws IOException {
+        return journal.restore(definition, (key, fsm) -> blackhole.consume(fsm));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @SuppressWarnings("unchecked")
+    public Object reprocess() {
+        SimpleFsm<Integer>[] instances = new SimpleFsm[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            instances[i] = definition.create();
+        }
+        for (int i = 0; i < TRANSITIONS; i++) {
+            instances[i % KEYS].process(EVENT);
+        }
+        return instances;
+    }
+
+}
@@ -0,0 +1,73 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.Condition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.State;
+import me.bvn13.fsm.exceptions.AmbiguousTransitionException;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import me.bvn13.fsm.exceptions.TransitionMissedException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Baseline: event processing over <code>HashMap&#60;String, Map&#60;String, Condition&#62;&#62;</code>
+ * as it was done by FSM before compiling definitions
+ *
+ * @param <E> the type of Events
+ */
+public final class LegacyFsm<E> {
+
+    private final Map<String, State<E>> states = new HashMap<>();
+    private final Map<String, Map<String, Condition<SimpleFsm, E>>> transitions = new HashMap<>();
+    private State<E> currentState;
+    private State<E> previousState;
+
+    void addState(State<E> state) {
+        states.put(state.getName(), state);
+    }
+
+    void addTransition(String fromState, String toState, Condition<SimpleFsm, E> condition) {
+        if (!transitions.containsKey(fromState)) {
+            transitions.put(fromState, new HashMap<>());
+        }
+        transitions.get(fromState).put(toState, condition);
+    }
+
+    void start(String name) {
+        currentState = states.get(name);
+    }
+
+    public State<E> getCurrentState() {
+        return currentState;
+    }
+
+    public void process(E event) {
+        currentState.process(event);
+        if (!transitions.containsKey(currentState.getName())) {
+            throw new TransitionMissedException(currentState.getName());
+        }
+        Map<String, Condition<SimpleFsm, E>> conditions = transitions.get(currentState.getName());
+        List<String> nextStates = new ArrayList<>();
+        for (String key : conditions.keySet()) {
+            if (conditions.get(key) == null) {
+                nextStates.add(key);
+            } else if (conditions.get(key).check(null, event)) {
+                nextStates.add(key);
+            }
+        }
+        if (nextStates.size() > 1) {
+            throw new AmbiguousTransitionException(currentState.getName(), nextStates);
+        }
+        if (nextStates.size() == 0) {
+            throw new BrokenTransitionException(currentState.getName());
+        }
+        currentState.afterEvent();
+        previousState = currentState;
+        currentState = states.get(nextStates.get(0));
+        currentState.beforeEvent();
+    }
+
+}
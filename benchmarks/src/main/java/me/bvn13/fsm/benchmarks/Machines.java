@@ -0,0 +1,194 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.State;
+import me.bvn13.fsm.StateBuilder;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Machines used by benchmarks
+ */
+public final class Machines {
+
+    private Machines() {
+    }
+
+    /**
+     * Session-like machine: <code>init -&#62; state-1 -&#62; ... -&#62; state-N -&#62; finish</code>,
+     * every intermediate state may also go back to <code>init</code> on "reset" event
+     *
+     * @param intermediateStates number of intermediate states
+     * @return builder ready to create or define the machine
+     */
+    public static FsmBuilder<SimpleFsm<String>, String, ?> session(int intermediateStates) {
+        FsmBuilder<SimpleFsm<String>, String, ?> builder = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .from("init")
+                    .withTransition()
+                        .to(intermediateStates > 0 ? "state-1" : "finish")
+                    .endTransition()
+                .end();
+        for (int i = 1; i <= intermediateStates; i++) {
+            builder = builder
+                    .state("state-" + i)
+                        .withTransition()
+                            .to(i < intermediateStates ? "state-" + (i + 1) : "finish")
+                            .checking((fsm, event) -> !"reset".equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to("init")
+                            .checking((fsm, event) -> "reset".equals(event))
+                        .endTransition()
+                    .end();
+        }
+        return builder
+                .finish("finish")
+                .end();
+    }
+
+    /**
+     * Ring machine which never finishes: state <code>s-i</code> has <code>fanOut</code> transitions to
+     * <code>s-(i+1+k)</code>, the transition <code>k</code> is taken on event <code>k</code>
+     *
+     * @param states number of states
+     * @param fanOut number of outgoing transitions of every state
+     * @return builder ready to create or define the machine
+     */
+    public static FsmBuilder<SimpleFsm<Integer>, Integer, ?> ring(int states, int fanOut) {
+        return ring(states, fanOut, 0);
+    }
+
+    /**
+     * The same as {@link #ring(int, int)} but every condition burns CPU before checking the event
+     *
+     * @param states     number of states
+     * @param fanOut     number of outgoing transitions of every state
+     * @param guardCost  cost of every condition in terms of {@link Blackhole#consumeCPU(long)}
+     * @return builder ready to create or define the machine
+     */
+    public static FsmBuilder<SimpleFsm<Integer>, Integer, ?> ring(int states, int fanOut, long guardCost) {
+        return ring(SimpleFsm::new, states, fanOut, guardCost);
+    }
+
+    /**
+     * The same as {@link #ring(int, int, long)} for any type of FSM
+     *
+     * @param supplier   FSM constructor
+     * @param states     number of states
+     * @param fanOut     number of outgoing transitions of every state
+     * @param guardCost  cost of every condition in terms of {@link Blackhole#consumeCPU(long)}
+     * @param <T>        the type of FSM
+     * @return builder ready to create or define the machine
+     */
+    public static <T extends Fsm> FsmBuilder<T, Integer, ?> ring(Supplier<T> supplier, int states, int fanOut, long guardCost) {
+        FsmBuilder<T, Integer, ?> builder = Fsm
+                .<T, Integer>from(supplier)
+                .withStates();
+        for (int i = 0; i < states; i++) {
+            StateBuilder<T, Integer, ?> state = i == 0 ? builder.from(name(i)) : builder.state(name(i));
+            for (int k = 0; k < fanOut; k++) {
+                final int expected = k;
+                state = state
+                        .withTransition()
+                            .to(name((i + 1 + k) % states))
+                            .checking((fsm, event) -> {
+                                if (guardCost > 0) {
+                                    Blackhole.consumeCPU(guardCost);
+                                }
+                                return event == expected;
+                            })
+                        .endTransition();
+            }
+            builder = state.end();
+        }
+        return builder;
+    }
+
+    /**
+     * The same as {@link #ring(int, int)} but transitions are declared with triggers instead of conditions:
+     * the event itself is the trigger
+     *
+     * @param states number of states
+     * @param fanOut number of outgoing transitions of every state
+     * @return builder ready to create or define the machine
+     */
+    public static FsmBuilder<SimpleFsm<Integer>, Integer, ?> triggeredRing(int states, int fanOut) {
+        FsmBuilder<SimpleFsm<Integer>, Integer, ?> builder = Fsm
+                .<SimpleFsm<Integer>, Integer>from(SimpleFsm::new)
+                .withStates()
+                .withTriggerExtractor(event -> event);
+        for (int i = 0; i < states; i++) {
+            StateBuilder<SimpleFsm<Integer>, Integer, ?> state = i == 0 ? builder.from(name(i)) : builder.state(name(i));
+            for (int k = 0; k < fanOut; k++) {
+                state = state
+                        .withTransition()
+                            .to(name((i + 1 + k) % states))
+                            .on(k)
+                        .endTransition();
+            }
+            builder = state.end();
+        }
+        return builder;
+    }
+
+    /**
+     * The same as {@link #ring(int, int)} but transitions are declared with key conditions instead of conditions:
+     * the event itself is the key
+     *
+     * @param states number of states
+     * @param fanOut number of outgoing transitions of every state
+     * @return builder ready to create or define the machine
+     */
+    public static FsmBuilder<SimpleFsm<Integer>, Integer, ?> keyedRing(int states, int fanOut) {
+        Function<Integer, Integer> key = event -> event;
+        FsmBuilder<SimpleFsm<Integer>, Integer, ?> builder = Fsm
+                .<SimpleFsm<Integer>, Integer>from(SimpleFsm::new)
+                .withStates();
+        for (int i = 0; i < states; i++) {
+            StateBuilder<SimpleFsm<Integer>, Integer, ?> state = i == 0 ? builder.from(name(i)) : builder.state(name(i));
+            for (int k = 0; k < fanOut; k++) {
+                state = state
+                        .withTransition()
+                            .to(name((i + 1 + k) % states))
+                            .when(key).equalsTo(k)
+                        .endTransition();
+            }
+            builder = state.end();
+        }
+        return builder;
+    }
+
+    /**
+     * The same machine as {@link #ring(int, int)} kept in String-keyed maps the way FSM did before compiling
+     * definitions
+     *
+     * @param states number of states
+     * @param fanOut number of outgoing transitions of every state
+     * @return legacy machine in initial state
+     */
+    public static LegacyFsm<Integer> legacyRing(int states, int fanOut) {
+        LegacyFsm<Integer> fsm = new LegacyFsm<>();
+        for (int i = 0; i < states; i++) {
+            fsm.addState(new State<>(name(i)));
+        }
+        for (int i = 0; i < states; i++) {
+            for (int k = 0; k < fanOut; k++) {
+                final int expected = k;
+                fsm.addTransition(name(i), name((i + 1 + k) % states), (f, event) -> event == expected);
+            }
+        }
+        fsm.start(name(0));
+        return fsm;
+    }
+
+    private static String name(int i) {
+        return "s-" + i;
+    }
+
+}
@@ -0,0 +1,80 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.store.MappedFsmStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second sent to random instances of a large population: on-heap instances vs records of
+ * memory-mapped {@link MappedFsmStore} stepped by a flyweight
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class OffHeapStoreBenchmark {
+
+    private static final Integer EVENT = 0;
+
+    @Param({"1000000", "10000000"})
+    public int population;
+
+    private SimpleFsm<Integer>[] onHeap;
+    private Path file;
+    private MappedFsmStore<SimpleFsm<Integer>, Integer> store;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        FsmDefinition<SimpleFsm<Integer>, Integer> definition = Machines.ring(64, 4).define();
+        onHeap = new SimpleFsm[population];
+        for (int i = 0; i < population; i++) {
+            onHeap[i] = definition.create();
+        }
+        file = Files.createTempFile("fsm", ".store");
+        Files.delete(file);
+        store = new MappedFsmStore<>(definition, file, population);
+        for (int i = 0; i < population; i++) {
+            store.process(i, EVENT);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Object onHeap() {
+        SimpleFsm<Integer> fsm = onHeap[ThreadLocalRandom.current().nextInt(population)];
+        fsm.process(EVENT);
+        return fsm.getCurrentState();
+    }
+
+    @Benchmark
+    public Object mappedStore() {
+        return store.process(ThreadLocalRandom.current().nextInt(population), EVENT);
+    }
+
+}
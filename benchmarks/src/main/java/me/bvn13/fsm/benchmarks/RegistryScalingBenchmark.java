@@ -0,0 +1,69 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.registry.FsmRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second dispatched by 4 threads to a million of keyed FSM instances depending on number of shards
+ * of {@link FsmRegistry}. Queues of shards are bounded, so in steady state dispatching is throttled down to
+ * the rate the shards process events at.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RegistryScalingBenchmark {
+
+    private static final int KEYS = 1 << 20;
+    private static final Integer EVENT = 0;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    @Param({"100"})
+    public long guardCost;
+
+    private Long[] keys;
+    private FsmRegistry<Long, SimpleFsm<Integer>, Integer> registry;
+
+    @Setup
+    public void setUp() {
+        keys = new Long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = (long) i;
+        }
+        FsmDefinition<SimpleFsm<Integer>, Integer> definition = Machines.ring(64, 4, guardCost).define();
+        registry = new FsmRegistry<>(definition, shards);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        registry.close();
+    }
+
+    @Benchmark
+    public void dispatch() {
+        registry.dispatch(keys[ThreadLocalRandom.current().nextInt(KEYS)], EVENT);
+    }
+
+}
@@ -0,0 +1,75 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.FsmSnapshot;
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to restore a million of instances: by state names with <code>startingAt</code> vs from binary snapshots
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class RehydrationBenchmark {
+
+    @Param({"1000000"})
+    public int instances;
+
+    private FsmDefinition<SimpleFsm<Integer>, Integer> definition;
+    private FsmSnapshot<SimpleFsm<Integer>, Integer> snapshot;
+    private String[] names;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        definition = Machines.ring(64, 4).define();
+        snapshot = new FsmSnapshot<>(definition);
+        names = new String[instances];
+        List<SimpleFsm<Integer>> saved = new ArrayList<>(instances);
+        for (int i = 0; i < instances; i++) {
+            SimpleFsm<Integer> fsm = definition.create();
+            for (int k = 0; k < i % 8; k++) {
+                fsm.process(k % 4);
+            }
+            names[i] = fsm.getCurrentState().getName();
+            saved.add(fsm);
+        }
+        buffer = ByteBuffer.allocateDirect(snapshot.bulkSize(instances));
+        snapshot.writeAll(saved, buffer);
+        buffer.flip();
+    }
+
+    @Benchmark
+    public void startingAt(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(definition.startingAt(name));
+        }
+    }
+
+    @Benchmark
+    public int snapshots(Blackhole blackhole) {
+        buffer.rewind();
+        return snapshot.readAll(buffer, blackhole::consume);
+    }
+
+}
@@ -0,0 +1,58 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second: String-keyed maps of transitions vs compiled integer-indexed transition table
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TransitionLookupBenchmark {
+
+    private static final Integer EVENT = 0;
+
+    @Param({"64"})
+    public int states;
+
+    @Param({"1", "4", "16"})
+    public int fanOut;
+
+    private LegacyFsm<Integer> legacy;
+    private SimpleFsm<Integer> compiled;
+
+    @Setup
+    public void setUp() {
+        legacy = Machines.legacyRing(states, fanOut);
+        compiled = Machines.ring(states, fanOut).create();
+    }
+
+    @Benchmark
+    public Object legacyHashMaps() {
+        legacy.process(EVENT);
+        return legacy.getCurrentState();
+    }
+
+    @Benchmark
+    public Object compiledTable() {
+        compiled.process(EVENT);
+        return compiled.getCurrentState();
+    }
+
+}
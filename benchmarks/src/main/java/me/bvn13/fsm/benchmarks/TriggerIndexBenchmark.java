@@ -0,0 +1,64 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.SimpleFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second on states with wide fan-out: every transition checks the event in its condition vs
+ * transitions indexed by trigger of the event vs transitions indexed by key conditions
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TriggerIndexBenchmark {
+
+    @Param({"4", "24"})
+    public int fanOut;
+
+    private Integer event;
+    private SimpleFsm<Integer> guarded;
+    private SimpleFsm<Integer> triggered;
+    private SimpleFsm<Integer> keyed;
+
+    @Setup
+    public void setUp() {
+        event = fanOut - 1;
+        guarded = Machines.ring(64, fanOut).create();
+        triggered = Machines.triggeredRing(64, fanOut).create();
+        keyed = Machines.keyedRing(64, fanOut).create();
+    }
+
+    @Benchmark
+    public Object conditions() {
+        guarded.process(event);
+        return guarded.getCurrentState();
+    }
+
+    @Benchmark
+    public Object triggers() {
+        triggered.process(event);
+        return triggered.getCurrentState();
+    }
+
+    @Benchmark
+    public Object keys() {
+        keyed.process(event);
+        return keyed.getCurrentState();
+    }
+
+}
@@ -0,0 +1,103 @@
+package me.bvn13.fsm.benchmarks;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.async.AsyncFsm;
+import me.bvn13.fsm.virtual.VirtualThreadFsm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to process one event by each of many machines whose processors block for <code>blockingMillis</code>:
+ * virtual thread per machine vs fixed pool of platform threads.
+ * <p>
+ * Requires Java 21+, is built by <code>java21</code> profile only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockingHandlersBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int machines;
+
+    @Param({"5"})
+    public long blockingMillis;
+
+    @Param({"200"})
+    public int platformThreads;
+
+    private ExecutorService platform;
+    private FsmDefinition<SimpleFsm<Integer>, Integer> definition;
+
+    @Setup
+    public void setUp() {
+        platform = Executors.newFixedThreadPool(platformThreads);
+
+        // @formatter:off
+
+        definition = Fsm
+                .<SimpleFsm<Integer>, Integer>from(SimpleFsm::new)
+                .withStates()
+                    .from("waiting")
+                        .withProcessor((fsm, event) -> {
+                            try {
+                                Thread.sleep(blockingMillis);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        })
+                        .withTransition()
+                            .to("waiting")
+                        .endTransition()
+                    .end()
+                .define();
+
+        // @formatter:on
+    }
+
+    @TearDown
+    public void tearDown() {
+        platform.shutdownNow();
+    }
+
+    @Benchmark
+    public void virtualThreads() {
+        CompletableFuture<?>[] results = new CompletableFuture[machines];
+        for (int i = 0; i < machines; i++) {
+            AsyncFsm<SimpleFsm<Integer>, Integer> async = VirtualThreadFsm.of(definition.create());
+            results[i] = async.submit(i).toCompletableFuture();
+        }
+        CompletableFuture.allOf(results).join();
+    }
+
+    @Benchmark
+    public void platformPool() {
+        CompletableFuture<?>[] results = new CompletableFuture[machines];
+        for (int i = 0; i < machines; i++) {
+            AsyncFsm<SimpleFsm<Integer>, Integer> async = new AsyncFsm<>(definition.create(), platform);
+            results[i] = async.submit(i).toCompletableFuture();
+        }
+        CompletableFuture.allOf(results).join();
+    }
+
+}
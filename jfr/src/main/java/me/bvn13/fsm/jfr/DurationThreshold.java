@@ -0,0 +1,80 @@
+package me.bvn13.fsm.jfr;
+
+import jdk.jfr.SettingControl;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Setting of FSM events measured by the library rather than by JFR: an event is recorded if its duration is not
+ * less than the threshold, e.g. <code>20 ms</code>. Values are written as JFR thresholds: a number followed by
+ * <code>ns</code>, <code>us</code>, <code>ms</code>, <code>s</code>, <code>m</code>, <code>h</code> or
+ * <code>d</code>. If several recordings set it, the least threshold is used.
+ */
+public final class DurationThreshold extends SettingControl {
+
+    static final String DEFAULT = "0 ns";
+
+    private String value = DEFAULT;
+    private volatile long nanos;
+
+    @Override
+    public String combine(Set<String> values) {
+        String least = null;
+        long leastNanos = Long.MAX_VALUE;
+        for (String value : values) {
+            long nanos = parse(value);
+            if (nanos < leastNanos) {
+                least = value;
+                leastNanos = nanos;
+            }
+        }
+        return least == null ? DEFAULT : least;
+    }
+
+    @Override
+    public void setValue(String value) {
+        this.nanos = parse(value);
+        this.value = value;
+    }
+
+    @Override
+    public String getValue() {
+        return value;
+    }
+
+    boolean accepts(long duration) {
+        return duration >= nanos;
+    }
+
+    static long parse(String value) {
+        String text = value.trim();
+        int unit = 0;
+        while (unit < text.length() && Character.isDigit(text.charAt(unit))) {
+            unit++;
+        }
+        if (unit == 0) {
+            throw new IllegalArgumentException("Illegal threshold: " + value);
+        }
+        long amount = Long.parseLong(text.substring(0, unit));
+        switch (text.substring(unit).trim()) {
+            case "ns":
+                return amount;
+            case "us":
+                return TimeUnit.MICROSECONDS.toNanos(amount);
+            case "ms":
+                return TimeUnit.MILLISECONDS.toNanos(amount);
+            case "s":
+                return TimeUnit.SECONDS.toNanos(amount);
+            case "m":
+                return TimeUnit.MINUTES.toNanos(amount);
+            case "h":
+                return TimeUnit.HOURS.toNanos(amount);
+            case "d":
+                return TimeUnit.DAYS.toNanos(amount);
+            default:
+                throw new IllegalArgumentException("Illegal threshold: " + value);
+        }
+    }
+
+}
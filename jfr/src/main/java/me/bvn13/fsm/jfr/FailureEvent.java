@@ -0,0 +1,30 @@
+package me.bvn13.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Exception thrown while processing an event
+ */
+@Name("me.bvn13.fsm.Failure")
+@Label("FSM Failure")
+@Category("FSM")
+@Description("Exception thrown by a processor, a handler or a condition, or while choosing the next state")
+class FailureEvent extends Event {
+
+    @Label("Machine")
+    String machine;
+
+    @Label("State")
+    String state;
+
+    @Label("Exception")
+    Class<?> exception;
+
+    @Label("Message")
+    String message;
+
+}
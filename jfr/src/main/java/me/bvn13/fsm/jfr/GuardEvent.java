@@ -0,0 +1,42 @@
+package me.bvn13.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Check of a condition of a transition
+ */
+@Name("me.bvn13.fsm.GuardEvaluation")
+@Label("FSM Guard Evaluation")
+@Category("FSM")
+@Description("Check of a condition of a transition from the state")
+@StackTrace(false)
+@Enabled(false)
+class GuardEvent extends Event {
+
+    @Label("Machine")
+    String machine;
+
+    @Label("State")
+    String state;
+
+    @Label("Guard Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long guardDuration;
+
+    @Name("minDuration")
+    @Label("Minimum Duration")
+    @Description("Checks shorter than that are not recorded")
+    @SettingDefinition
+    protected boolean minDuration(DurationThreshold threshold) {
+        return threshold.accepts(guardDuration);
+    }
+
+}
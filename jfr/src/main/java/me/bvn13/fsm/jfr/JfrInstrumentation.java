@@ -0,0 +1,149 @@
+package me.bvn13.fsm.jfr;
+
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.FsmInstrumentation;
+
+/**
+ * <p>
+ * <b>JDK Flight Recorder events of FSM processing</b>
+ * </p>
+ *
+ * <p>
+ * Emits events of the definition it is given to:
+ * <ol>
+ *     <li><code>me.bvn13.fsm.Step</code> - an event processed: machine, states FSM has changed from and to,
+ *     duration</li>
+ *     <li><code>me.bvn13.fsm.GuardEvaluation</code> - a condition checked: machine, state, duration</li>
+ *     <li><code>me.bvn13.fsm.Failure</code> - an exception thrown: machine, state, exception class and message</li>
+ * </ol>
+ * Steps and checks are disabled by default, as they happen for every event, failures are enabled. Durations are
+ * measured by the library, so steps and checks are filtered with their <code>minDuration</code> setting
+ * ({@link DurationThreshold}, <code>0 ns</code> by default) instead of JFR <code>threshold</code>:
+ *
+ * <pre>
+ *  {@code
+ *  FsmDefinition<SimpleFsm<String>, String> definition = Fsm
+ *    .<SimpleFsm<String>, String>from(SimpleFsm::new)
+ *    .withStates()
+ *    .withInstrumentation(new JfrInstrumentation("orders"))
+ *    ...
+ *    .define();
+ *
+ *  Recording recording = new Recording();
+ *  recording.enable("me.bvn13.fsm.Step").with("minDuration", "10 ms");
+ *  }
+ * </pre>
+ *
+ * The instrumentation costs something even while no recording has the events enabled: as with any instrumentation,
+ * the library calls {@link System#nanoTime()} around every handler, processor and event processed, and every
+ * condition is called through a counting wrapper. On top of it every step and failure creates an event object to
+ * check whether it is enabled. Measuring conditions adds 2 more calls of {@link System#nanoTime()} per check, so it
+ * is off unless requested with {@link #JfrInstrumentation(String, boolean)}. Requires Java 17+.
+ */
+public final class JfrInstrumentation implements FsmInstrumentation {
+
+    private final String machine;
+    private final boolean guards;
+    private volatile String[] states;
+
+    /**
+     * Does not measure conditions, so <code>me.bvn13.fsm.GuardEvaluation</code> events are never recorded
+     *
+     * @param machine name of the machine the events are recorded with
+     */
+    public JfrInstrumentation(String machine) {
+        this(machine, false);
+    }
+
+    /**
+     * @param machine name of the machine the events are recorded with
+     * @param guards  whether to measure conditions and record <code>me.bvn13.fsm.GuardEvaluation</code>,
+     *                which costs 2 calls of {@link System#nanoTime()} per check
+     */
+    public JfrInstrumentation(String machine, boolean guards) {
+        this.machine = machine;
+        this.guards = guards;
+    }
+
+    @Override
+    public void bind(FsmDefinition<?, ?> definition) {
+        if (states != null) {
+            throw new IllegalStateException("Instrumentation " + machine + " is already bound to a definition");
+        }
+        String[] states = new String[definition.getStateCount()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = definition.getState(i).getName();
+        }
+        this.states = states;
+    }
+
+    @Override
+    public void entered(int state, long nanos) {
+    }
+
+    @Override
+    public void exited(int state, long nanos) {
+    }
+
+    @Override
+    public void processed(int state, long nanos) {
+    }
+
+    @Override
+    public void transition(int from, int to) {
+    }
+
+    @Override
+    public void guardEvaluated(int state) {
+    }
+
+    @Override
+    public void guardEvaluated(int state, long nanos) {
+        GuardEvent event = new GuardEvent();
+        event.guardDuration = nanos;
+        if (event.shouldCommit()) {
+            event.machine = machine;
+            event.state = states[state];
+            event.commit();
+        }
+    }
+
+    @Override
+    public boolean isTimingGuards() {
+        return guards;
+    }
+
+    @Override
+    public void stepped(int from, int to, long nanos) {
+        StepEvent event = new StepEvent();
+        event.stepDuration = nanos;
+        if (event.shouldCommit()) {
+            event.machine = machine;
+            event.from = states[from];
+            event.to = states[to];
+            event.commit();
+        }
+    }
+
+    @Override
+    public void failed(int state, RuntimeException exception) {
+        FailureEvent event = new FailureEvent();
+        if (event.shouldCommit()) {
+            event.machine = machine;
+            event.state = states[state];
+            event.exception = exception.getClass();
+            event.message = exception.getMessage();
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns name of the machine the events are recorded with
+     *
+     * @return name
+     */
+    public String getMachine() {
+        return machine;
+    }
+
+}
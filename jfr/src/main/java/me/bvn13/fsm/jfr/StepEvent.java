@@ -0,0 +1,45 @@
+package me.bvn13.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Processing of an event by FSM: the processor of the state, conditions of its transitions and handlers
+ */
+@Name("me.bvn13.fsm.Step")
+@Label("FSM Step")
+@Category("FSM")
+@Description("Processing of an event by FSM and the transition it has led to")
+@StackTrace(false)
+@Enabled(false)
+class StepEvent extends Event {
+
+    @Label("Machine")
+    String machine;
+
+    @Label("From")
+    String from;
+
+    @Label("To")
+    String to;
+
+    @Label("Step Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long stepDuration;
+
+    @Name("minDuration")
+    @Label("Minimum Duration")
+    @Description("Steps shorter than that are not recorded")
+    @SettingDefinition
+    protected boolean minDuration(DurationThreshold threshold) {
+        return threshold.accepts(stepDuration);
+    }
+
+}
@@ -0,0 +1,131 @@
+package me.bvn13.fsm.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class JfrInstrumentationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FsmDefinition<SimpleFsm<String>, String> definition;
+
+    @Before
+    public void setUp() {
+
+        // @formatter:off
+
+        definition = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withInstrumentation(new JfrInstrumentation("orders", true))
+                    .from("init")
+                        .withTransition()
+                            .to("slow")
+                        .endTransition()
+                    .end()
+                    .state("slow")
+                        .withProcessor((fsm, event) -> sleep(50))
+                        .withTransition()
+                            .to("finish")
+                            .checking((fsm, event) -> "stop".equals(event))
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .define();
+
+        // @formatter:on
+    }
+
+    @Test
+    public void recordsSlowSteps() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("steps.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("me.bvn13.fsm.Step").with("minDuration", "20 ms");
+            recording.start();
+            SimpleFsm<String> fsm = definition.create();
+            fsm.process("start");
+            fsm.process("stop");
+            fsm.process("done");
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("me.bvn13.fsm.Step"))
+                .collect(Collectors.toList());
+        Assert.assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        Assert.assertEquals("orders", event.getString("machine"));
+        Assert.assertEquals("slow", event.getString("from"));
+        Assert.assertEquals("finish", event.getString("to"));
+        Assert.assertTrue(event.getDuration("stepDuration").toMillis() >= 50);
+    }
+
+    @Test
+    public void recordsGuardsAndFailures() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("failures.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("me.bvn13.fsm.GuardEvaluation");
+            recording.enable("me.bvn13.fsm.Failure");
+            recording.start();
+            SimpleFsm<String> fsm = definition.create();
+            fsm.process("start");
+            try {
+                fsm.process("unknown");
+                Assert.fail("Exception expected");
+            } catch (BrokenTransitionException e) {
+                // expected
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> guards = events.stream()
+                .filter(event -> event.getEventType().getName().equals("me.bvn13.fsm.GuardEvaluation"))
+                .collect(Collectors.toList());
+        Assert.assertEquals(1, guards.size());
+        Assert.assertEquals("slow", guards.get(0).getString("state"));
+        List<RecordedEvent> failures = events.stream()
+                .filter(event -> event.getEventType().getName().equals("me.bvn13.fsm.Failure"))
+                .collect(Collectors.toList());
+        Assert.assertEquals(1, failures.size());
+        Assert.assertEquals("slow", failures.get(0).getString("state"));
+        Assert.assertEquals(BrokenTransitionException.class.getName(),
+                failures.get(0).getClass("exception").getName());
+        Assert.assertTrue(events.stream().noneMatch(event -> event.getEventType().getName().equals("me.bvn13.fsm.Step")));
+    }
+
+    @Test
+    public void parsesThresholds() {
+        Assert.assertEquals(0, DurationThreshold.parse("0 ns"));
+        Assert.assertEquals(20_000_000, DurationThreshold.parse("20 ms"));
+        Assert.assertEquals(3_000, DurationThreshold.parse("3us"));
+        Assert.assertEquals(2_000_000_000, DurationThreshold.parse("2 s"));
+        DurationThreshold threshold = new DurationThreshold();
+        Assert.assertEquals("5 ms", threshold.combine(new java.util.HashSet<>(java.util.Arrays.asList("1 s", "5 ms"))));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package me.bvn13.fsm.processor;
+
+import me.bvn13.fsm.ResolutionPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Validated model of a machine declared with {@link me.bvn13.fsm.annotation.StateMachine}
+ */
+final class Machine {
+
+    final String packageName;
+    final String className;
+    final String superClass;
+    final String eventType;
+    final ResolutionPolicy resolutionPolicy;
+    final List<State> states = new ArrayList<>();
+    int initial;
+
+    Machine(String packageName, String className, String superClass, String eventType,
+            ResolutionPolicy resolutionPolicy) {
+        this.packageName = packageName;
+        this.className = className;
+        this.superClass = superClass;
+        this.eventType = eventType;
+        this.resolutionPolicy = resolutionPolicy;
+    }
+
+    /**
+     * @return State id or <code>-1</code>
+     */
+    int stateId(String name) {
+        for (int i = 0; i < states.size(); i++) {
+            if (states.get(i).name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static final class State {
+
+        final String name;
+        final boolean finish;
+        final String before;
+        final String after;
+        final String processor;
+        /**
+         * Outgoing transitions in order of checking
+         */
+        final List<Transition> transitions = new ArrayList<>();
+
+        State(String name, boolean finish, String before, String after, String processor) {
+            this.name = name;
+            this.finish = finish;
+            this.before = before;
+            this.after = after;
+            this.processor = processor;
+        }
+
+    }
+
+    static final class Transition {
+
+        final int to;
+        final String guard;
+        final int priority;
+
+        Transition(int to, String guard, int priority) {
+            this.to = to;
+            this.guard = guard;
+            this.priority = priority;
+        }
+
+    }
+
+}
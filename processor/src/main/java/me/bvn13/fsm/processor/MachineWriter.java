@@ -0,0 +1,418 @@
+package me.bvn13.fsm.processor;
+
+import me.bvn13.fsm.ResolutionPolicy;
+
+import java.util.List;
+
+/**
+ * Writes source code of the final subclass of a machine declared with {@link me.bvn13.fsm.annotation.StateMachine}.
+ * <p>
+ * The generated class keeps current and previous state ids in int fields, the names and finishing flags of states
+ * in static arrays, and calls handlers, processors and conditions of every state from <code>switch</code> statements
+ * on the state id, so the calls are direct and may be inlined. Next state is chosen the way
+ * {@link me.bvn13.fsm.FsmDefinition} does: transitions are checked in order of priorities, all of them with
+ * {@link ResolutionPolicy#STRICT} unless there is a single one, until the first appropriate one with
+ * {@link ResolutionPolicy#FIRST_MATCH}; the same exceptions are thrown.
+ * <p>
+ * The generated class has no {@link me.bvn13.fsm.FsmDefinition}: {@link me.bvn13.fsm.Fsm#getDefinition()} and
+ * the methods adding states and transitions at runtime are overridden to throw
+ * {@link UnsupportedOperationException}.
+ */
+final class MachineWriter {
+
+    private static final String EXCEPTIONS = "me.bvn13.fsm.exceptions.";
+
+    private final Machine machine;
+    private final StringBuilder code = new StringBuilder();
+    private int indent;
+
+    MachineWriter(Machine machine) {
+        this.machine = machine;
+    }
+
+    String write() {
+        if (!machine.packageName.isEmpty()) {
+            line("package %s;", machine.packageName);
+            line("");
+        }
+        line("/**");
+        line(" * State machine {@link %s} generated by {@link me.bvn13.fsm.processor.StateMachineProcessor}", machine.superClass);
+        line(" */");
+        open("public final class %s extends %s {", machine.className, machine.superClass);
+        line("");
+        writeTables();
+        line("");
+        line("private int current = -1;");
+        line("private int previous = -1;");
+        line("");
+        writeStartingAt();
+        writeInit();
+        writeProcess();
+        writeProcessAll();
+        writeAccessors();
+        writeSetCurrentState();
+        writeUnsupported();
+        writeHandlers("handle", "processor", "event");
+        writeHandlers("enter", "before", null);
+        writeHandlers("exit", "after", null);
+        writeNext();
+        if (hasAmbiguity()) {
+            writeAmbiguous();
+        }
+        close("}");
+        return code.toString();
+    }
+
+    private void writeTables() {
+        StringBuilder names = new StringBuilder();
+        StringBuilder finish = new StringBuilder();
+        StringBuilder states = new StringBuilder();
+        for (Machine.State state : machine.states) {
+            String separator = names.length() == 0 ? "" : ", ";
+            names.append(separator).append(literal(state.name));
+            finish.append(separator).append(state.finish);
+            states.append(separator).append(String.format("new me.bvn13.fsm.State<%s>(%s, %s)",
+                    machine.eventType, literal(state.name), state.finish));
+        }
+        line("private static final int INITIAL = %d;", machine.initial);
+        line("private static final String[] NAMES = {%s};", names);
+        line("private static final boolean[] FINISH = {%s};", finish);
+        line("@SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+        line("private static final me.bvn13.fsm.State<%s>[] STATES = new me.bvn13.fsm.State[]{%s};",
+                machine.eventType, states);
+    }
+
+    private void writeStartingAt() {
+        line("/**");
+        line(" * Creates new FSM instance in custom state");
+        line(" *");
+        line(" * @param name State name");
+        line(" * @return FSM instance");
+        line(" */");
+        open("public static %s startingAt(String name) {", machine.className);
+        line("%s fsm = new %<s();", machine.className);
+        line("fsm.setCurrentState(name);");
+        line("return fsm;");
+        close("}");
+        line("");
+    }
+
+    private void writeInit() {
+        line("@Override");
+        open("public void init() {");
+        line("current = INITIAL;");
+        line("currentState = STATES[INITIAL];");
+        line("previous = -1;");
+        line("previousState = null;");
+        line("done = false;");
+        line("enter(INITIAL);");
+        close("}");
+        line("");
+    }
+
+    private void writeProcess() {
+        line("@Override");
+        open("public void process(%s event) {", machine.eventType);
+        open("if (done) {");
+        line("return;");
+        close("}");
+        line("int from = current;");
+        line("handle(from, event);");
+        open("if (FINISH[from]) {");
+        line("done = true;");
+        line("exit(from);");
+        line("return;");
+        close("}");
+        line("int to = next(from, event);");
+        line("exit(from);");
+        line("previous = from;");
+        line("previousState = currentState;");
+        line("current = to;");
+        line("currentState = STATES[to];");
+        line("enter(to);");
+        close("}");
+        line("");
+    }
+
+    private void writeProcessAll() {
+        String batchException = EXCEPTIONS + "BatchProcessingException";
+        line("@Override");
+        open("public int processAll(Iterable<? extends %s> events) {", machine.eventType);
+        open("if (done) {");
+        line("return 0;");
+        close("}");
+        line("int processed = 0;");
+        open("try {");
+        open("for (%s event : events) {", machine.eventType);
+        line("processed++;");
+        line("process(event);");
+        open("if (done) {");
+        line("break;");
+        close("}");
+        close("}");
+        close("} catch (RuntimeException e) {");
+        indent++;
+        line("processed--;");
+        line("throw new %s(processed, e);", batchException);
+        close("} finally {");
+        indent++;
+        line("afterBatch(processed);");
+        close("}");
+        line("return processed;");
+        close("}");
+        line("");
+
+        line("@Override");
+        open("public int processAll(%s[] events, int from, int to) {", machine.eventType);
+        open("if (from < 0 || to > events.length || from > to) {");
+        line("throw new IndexOutOfBoundsException(String.format(\"Range [%%d, %%d) is out of [0, %%d)\", from, to, events.length));");
+        close("}");
+        open("if (done) {");
+        line("return 0;");
+        close("}");
+        line("int i = from;");
+        open("try {");
+        open("while (i < to && !done) {");
+        line("process(events[i++]);");
+        close("}");
+        close("} catch (RuntimeException e) {");
+        indent++;
+        line("i--;");
+        line("throw new %s(i - from, e);", batchException);
+        close("} finally {");
+        indent++;
+        line("afterBatch(i - from);");
+        close("}");
+        line("return i - from;");
+        close("}");
+        line("");
+    }
+
+    private void writeAccessors() {
+        line("@Override");
+        open("public int getCurrentStateId() {");
+        line("return current;");
+        close("}");
+        line("");
+        line("@Override");
+        open("public int getPreviousStateId() {");
+        line("return previous;");
+        close("}");
+        line("");
+    }
+
+    private void writeSetCurrentState() {
+        line("@Override");
+        open("protected void setCurrentState(String name) {");
+        line("int id;");
+        open("switch (name) {");
+        for (int i = 0; i < machine.states.size(); i++) {
+            open("case %s:", literal(machine.states.get(i).name));
+            line("id = %d;", i);
+            line("break;");
+            indent--;
+        }
+        open("default:");
+        line("throw new %sNotInitializedException(String.format(\"Unable to find state '%%s'\", name));", EXCEPTIONS);
+        indent--;
+        close("}");
+        line("current = id;");
+        line("currentState = STATES[id];");
+        line("done = FINISH[id];");
+        close("}");
+        line("");
+    }
+
+    /**
+     * Overrides the methods of {@link me.bvn13.fsm.Fsm} which need a definition
+     */
+    private void writeUnsupported() {
+        String state = String.format("me.bvn13.fsm.State<%s>", machine.eventType);
+        String condition = String.format("me.bvn13.fsm.Condition<%s, %s>", machine.superClass, machine.eventType);
+        unsupported(String.format("me.bvn13.fsm.FsmDefinition<%s, %s> getDefinition()", machine.superClass,
+                machine.eventType));
+        unsupported(String.format("void initState(%s state)", state));
+        unsupported(String.format("void addState(%s state)", state));
+        unsupported("void addTransition(String fromState, String toState)");
+        unsupported(String.format("void addTransition(String fromState, String toState, %s condition)", condition));
+        unsupported(String.format("void addTransition(String fromState, %s toState)", state));
+        unsupported(String.format("void addTransition(String fromState, %s toState, %s condition)", state, condition));
+        unsupported("void setResolutionPolicy(me.bvn13.fsm.ResolutionPolicy resolutionPolicy)");
+    }
+
+    private void unsupported(String signature) {
+        line("@Override");
+        open("public %s {", signature);
+        line("throw new UnsupportedOperationException(%s);", literal(machine.className
+                + " is generated from annotations at compile time, it has no FsmDefinition and its states and"
+                + " transitions can not be changed"));
+        close("}");
+        line("");
+    }
+
+    /**
+     * Writes the switch calling the method of every state which has it
+     */
+    private void writeHandlers(String name, String kind, String event) {
+        if (event == null) {
+            open("private void %s(int state) {", name);
+        } else {
+            open("private void %s(int state, %s %s) {", name, machine.eventType, event);
+        }
+        open("switch (state) {");
+        for (int i = 0; i < machine.states.size(); i++) {
+            Machine.State state = machine.states.get(i);
+            String method = "processor".equals(kind) ? state.processor : "before".equals(kind) ? state.before : state.after;
+            if (method.isEmpty()) {
+                continue;
+            }
+            open("case %d:", i);
+            line("%s(%s);", method, event == null ? "" : event);
+            line("break;");
+            indent--;
+        }
+        open("default:");
+        line("break;");
+        indent--;
+        close("}");
+        close("}");
+        line("");
+    }
+
+    private void writeNext() {
+        open("private int next(int state, %s event) {", machine.eventType);
+        open("switch (state) {");
+        for (int i = 0; i < machine.states.size(); i++) {
+            Machine.State state = machine.states.get(i);
+            if (state.finish || state.transitions.isEmpty()) {
+                continue;
+            }
+            open("case %d: {", i);
+            if (isStrict(state)) {
+                writeStrict(i, state);
+            } else {
+                writeFirstMatch(state);
+            }
+            close("}");
+        }
+        open("default:");
+        line("throw new %sTransitionMissedException(NAMES[state]);", EXCEPTIONS);
+        indent--;
+        close("}");
+        close("}");
+        line("");
+    }
+
+    private void writeFirstMatch(Machine.State state) {
+        for (Machine.Transition transition : state.transitions) {
+            if (transition.guard.isEmpty()) {
+                line("return %d;", transition.to);
+                return;
+            }
+            open("if (%s(event)) {", transition.guard);
+            line("return %d;", transition.to);
+            close("}");
+        }
+        line("throw new %sBrokenTransitionException(%s);", EXCEPTIONS, literal(state.name));
+    }
+
+    /**
+     * Checks every condition and fails if more than 1 transition is appropriate
+     */
+    private void writeStrict(int id, Machine.State state) {
+        List<Machine.Transition> transitions = state.transitions;
+        StringBuilder matched = new StringBuilder();
+        StringBuilder count = new StringBuilder();
+        StringBuilder next = new StringBuilder();
+        StringBuilder targets = new StringBuilder();
+        for (int k = 0; k < transitions.size(); k++) {
+            Machine.Transition transition = transitions.get(k);
+            line("boolean m%d = %s;", k, transition.guard.isEmpty() ? "true" : transition.guard + "(event)");
+            String separator = k == 0 ? "" : ", ";
+            matched.append(separator).append("m").append(k);
+            targets.append(separator).append(transition.to);
+            count.append(k == 0 ? "" : " + ").append("(m").append(k).append(" ? 1 : 0)");
+            next.append(k < transitions.size() - 1 ? "m" + k + " ? " + transition.to + " : " : transition.to);
+        }
+        line("int matched = %s;", count);
+        open("if (matched == 1) {");
+        line("return %s;", next);
+        close("}");
+        open("if (matched > 1) {");
+        line("throw ambiguous(%d, new boolean[]{%s}, new int[]{%s});", id, matched, targets);
+        close("}");
+        line("throw new %sBrokenTransitionException(%s);", EXCEPTIONS, literal(state.name));
+    }
+
+    private void writeAmbiguous() {
+        open("private static %sAmbiguousTransitionException ambiguous(int from, boolean[] matched, int[] to) {",
+                EXCEPTIONS);
+        line("java.util.List<String> next = new java.util.ArrayList<>();");
+        open("for (int i = 0; i < to.length; i++) {");
+        open("if (matched[i]) {");
+        line("next.add(NAMES[to[i]]);");
+        close("}");
+        close("}");
+        line("return new %sAmbiguousTransitionException(NAMES[from], next);", EXCEPTIONS);
+        close("}");
+        line("");
+    }
+
+    private boolean isStrict(Machine.State state) {
+        return machine.resolutionPolicy == ResolutionPolicy.STRICT && state.transitions.size() > 1;
+    }
+
+    private boolean hasAmbiguity() {
+        for (Machine.State state : machine.states) {
+            if (!state.finish && isStrict(state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void open(String format, Object... args) {
+        line(format, args);
+        indent++;
+    }
+
+    private void close(String format, Object... args) {
+        indent--;
+        line(format, args);
+    }
+
+    private void line(String format, Object... args) {
+        String text = String.format(format, args);
+        if (!text.isEmpty()) {
+            for (int i = 0; i < indent; i++) {
+                code.append("    ");
+            }
+        }
+        code.append(text).append('\n');
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                default:
+                    if (c < ' ' || c > '~') {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+}
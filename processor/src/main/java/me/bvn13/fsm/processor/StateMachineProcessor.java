@@ -0,0 +1,234 @@
+package me.bvn13.fsm.processor;
+
+import me.bvn13.fsm.annotation.FsmState;
+import me.bvn13.fsm.annotation.FsmTransition;
+import me.bvn13.fsm.annotation.StateMachine;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * <b>Annotation processor generating state machines declared with {@link StateMachine}</b>
+ * </p>
+ *
+ * <p>
+ * Checks the declaration (states, transitions and signatures of the methods they refer to) reporting mistakes as
+ * compilation errors, then generates the final subclass, see {@link MachineWriter}.
+ */
+public class StateMachineProcessor extends AbstractProcessor {
+
+    private static final String FSM = "me.bvn13.fsm.Fsm";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(StateMachine.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(StateMachine.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@StateMachine must annotate a class");
+                continue;
+            }
+            Machine machine = read((TypeElement) element);
+            if (machine != null) {
+                write(machine, element);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the model or <code>null</code> if the declaration is wrong, errors are reported
+     */
+    private Machine read(TypeElement type) {
+        boolean valid = checkClass(type);
+        TypeMirror event = eventType(type.asType());
+        if (event == null) {
+            error(type, "%s must extend %s<%s, E> with a concrete type of events", type.getSimpleName(), FSM,
+                    type.getSimpleName());
+            return null;
+        }
+        StateMachine annotation = type.getAnnotation(StateMachine.class);
+        String name = annotation.name().isEmpty() ? type.getSimpleName() + "Fsm" : annotation.name();
+        Machine machine = new Machine(processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString(),
+                name, type.getQualifiedName().toString(), event.toString(), annotation.resolutionPolicy());
+
+        int initial = -1;
+        for (FsmState state : type.getAnnotationsByType(FsmState.class)) {
+            if (machine.stateId(state.name()) >= 0) {
+                valid = error(type, "State '%s' already exists", state.name());
+                continue;
+            }
+            if (state.initial()) {
+                if (state.finish()) {
+                    valid = error(type, "State '%s' is both initial and finishing", state.name());
+                } else if (initial >= 0) {
+                    valid = error(type, "States '%s' and '%s' are both initial",
+                            machine.states.get(initial).name, state.name());
+                }
+                initial = machine.states.size();
+            }
+            valid &= checkMethod(type, state.before(), null, false);
+            valid &= checkMethod(type, state.after(), null, false);
+            valid &= checkMethod(type, state.processor(), event, false);
+            machine.states.add(new Machine.State(state.name(), state.finish(), state.before(), state.after(),
+                    state.processor()));
+        }
+        if (initial < 0) {
+            valid = error(type, "There must be an initial state: @FsmState(name = ..., initial = true)");
+        }
+        machine.initial = initial;
+
+        for (FsmTransition transition : type.getAnnotationsByType(FsmTransition.class)) {
+            int from = machine.stateId(transition.from());
+            int to = machine.stateId(transition.to());
+            if (from < 0 || to < 0) {
+                valid = error(type, "Unable to find state '%s' of transition from '%s' to '%s'",
+                        from < 0 ? transition.from() : transition.to(), transition.from(), transition.to());
+                continue;
+            }
+            Machine.State state = machine.states.get(from);
+            for (Machine.Transition existing : state.transitions) {
+                if (existing.to == to) {
+                    valid = error(type, "Transition from '%s' to '%s' already exists", transition.from(),
+                            transition.to());
+                }
+            }
+            valid &= checkMethod(type, transition.guard(), event, true);
+            state.transitions.add(new Machine.Transition(to, transition.guard(), transition.priority()));
+        }
+        for (Machine.State state : machine.states) {
+            state.transitions.sort(Comparator.comparingInt((Machine.Transition t) -> t.priority).reversed());
+        }
+        return valid ? machine : null;
+    }
+
+    private void write(Machine machine, Element origin) {
+        String name = machine.packageName.isEmpty() ? machine.className : machine.packageName + "." + machine.className;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(name, origin);
+            try (Writer writer = file.openWriter()) {
+                writer.write(new MachineWriter(machine).write());
+            }
+        } catch (IOException e) {
+            error(origin, "Unable to write %s: %s", name, e.getMessage());
+        }
+    }
+
+    private boolean checkClass(TypeElement type) {
+        boolean valid = true;
+        if (type.getModifiers().contains(Modifier.FINAL) || type.getModifiers().contains(Modifier.PRIVATE)) {
+            valid = error(type, "%s must be neither final nor private", type.getSimpleName());
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            valid = error(type, "%s must be static", type.getSimpleName());
+        } else if (type.getNestingKind() != NestingKind.TOP_LEVEL && type.getNestingKind() != NestingKind.MEMBER) {
+            valid = error(type, "%s must be a top level or a static nested class", type.getSimpleName());
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            valid = error(type, "%s must not have type parameters", type.getSimpleName());
+        }
+        boolean constructor = true;
+        for (ExecutableElement method : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            constructor = false;
+            if (method.getParameters().isEmpty() && !method.getModifiers().contains(Modifier.PRIVATE)) {
+                return valid;
+            }
+        }
+        if (!constructor) {
+            valid = error(type, "%s must have a constructor with no parameters", type.getSimpleName());
+        }
+        return valid;
+    }
+
+    /**
+     * Checks there is a non-private method accepting nothing (handlers) or the event (processors and conditions)
+     */
+    private boolean checkMethod(TypeElement type, String name, TypeMirror event, boolean condition) {
+        if (name.isEmpty()) {
+            return true;
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!method.getSimpleName().contentEquals(name) || method.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            if (condition && method.getReturnType().getKind() != TypeKind.BOOLEAN) {
+                continue;
+            }
+            if (event == null ? method.getParameters().isEmpty() : method.getParameters().size() == 1
+                    && processingEnv.getTypeUtils().isAssignable(event, method.getParameters().get(0).asType())) {
+                return true;
+            }
+        }
+        return error(type, "Unable to find non-private method %s %s(%s)", condition ? "boolean" : "void", name,
+                event == null ? "" : event);
+    }
+
+    /**
+     * @return type argument <code>E</code> of {@link me.bvn13.fsm.Fsm} the type inherits
+     */
+    private TypeMirror eventType(TypeMirror type) {
+        TypeElement fsm = processingEnv.getElementUtils().getTypeElement(FSM);
+        Set<TypeMirror> visited = new HashSet<>();
+        return eventType(type, processingEnv.getTypeUtils().erasure(fsm.asType()), visited);
+    }
+
+    private TypeMirror eventType(TypeMirror type, TypeMirror fsm, Set<TypeMirror> visited) {
+        for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type)) {
+            if (!visited.add(supertype)) {
+                continue;
+            }
+            if (processingEnv.getTypeUtils().isSameType(processingEnv.getTypeUtils().erasure(supertype), fsm)) {
+                DeclaredType declared = (DeclaredType) supertype;
+                if (declared.getTypeArguments().size() != 2) {
+                    return null;
+                }
+                TypeMirror event = declared.getTypeArguments().get(1);
+                return event.getKind() == TypeKind.DECLARED || event.getKind() == TypeKind.ARRAY ? event : null;
+            }
+            TypeMirror event = eventType(supertype, fsm, visited);
+            if (event != null) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return <code>false</code> to be assigned to the validity flag
+     */
+    private boolean error(Element element, String message, Object... args) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, format(message, args), element);
+        return false;
+    }
+
+}
@@ -0,0 +1,161 @@
+package me.bvn13.fsm.processor;
+
+import me.bvn13.fsm.exceptions.AmbiguousTransitionException;
+import me.bvn13.fsm.exceptions.BatchProcessingException;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import me.bvn13.fsm.exceptions.TransitionMissedException;
+import me.bvn13.fsm.processor.machines.GeneratedSwitch;
+import me.bvn13.fsm.processor.machines.Order;
+import me.bvn13.fsm.processor.machines.OrderFsm;
+import me.bvn13.fsm.processor.machines.Switch;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class StateMachineProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void generatedMachine() {
+        Order order = new OrderFsm();
+        order.init();
+        Assert.assertEquals("new", order.getCurrentState().getName());
+        Assert.assertEquals(0, order.getCurrentStateId());
+
+        order.process("pay 10");
+        order.process("ship");
+        Assert.assertEquals("shipped", order.getCurrentState().getName());
+        Assert.assertEquals("paid", order.getPreviousState().getName());
+        Assert.assertFalse(order.isDone());
+        order.process("anything");
+        Assert.assertTrue(order.isDone());
+        order.process("ignored");
+        Assert.assertEquals(Arrays.asList("created", "charge ship", "charged", "shipped"), order.log);
+    }
+
+    @Test
+    public void priorities() {
+        Order order = OrderFsm.startingAt("paid");
+        order.process("cancel");
+        Assert.assertEquals("cancelled", order.getCurrentState().getName());
+    }
+
+    @Test
+    public void strictResolution() {
+        Order order = new OrderFsm();
+        order.init();
+        try {
+            order.process("pay and cancel");
+            Assert.fail("Ambiguous transition is expected");
+        } catch (AmbiguousTransitionException e) {
+            Assert.assertEquals("Ambiguous transition from state new. Candidates are: paid, cancelled", e.getMessage());
+        }
+        try {
+            order.process("wait");
+            Assert.fail("Broken transition is expected");
+        } catch (BrokenTransitionException e) {
+            Assert.assertEquals("new", order.getCurrentState().getName());
+        }
+    }
+
+    @Test
+    public void firstMatchResolution() {
+        Switch light = new GeneratedSwitch();
+        light.init();
+        light.process(0);
+        Assert.assertEquals("off", light.getCurrentState().getName());
+        light.process(1);
+        Assert.assertEquals("on", light.getCurrentState().getName());
+        light.process(42);
+        Assert.assertEquals("broken", light.getCurrentState().getName());
+        try {
+            light.process(1);
+            Assert.fail("Missed transition is expected");
+        } catch (TransitionMissedException e) {
+            Assert.assertEquals("broken", light.getCurrentState().getName());
+        }
+    }
+
+    @Test
+    public void batchProcessing() {
+        Switch light = new GeneratedSwitch();
+        light.init();
+        Assert.assertEquals(3, light.processAll(Arrays.asList(1, 1, 1)));
+        Assert.assertEquals("on", light.getCurrentState().getName());
+        try {
+            light.processAll(new Integer[]{1, 1, 42, 0}, 0, 4);
+            Assert.fail("Missed transition is expected");
+        } catch (BatchProcessingException e) {
+            Assert.assertEquals(3, e.getProcessed());
+        }
+    }
+
+    @Test
+    public void hasNoDefinition() {
+        Order order = new OrderFsm();
+        try {
+            order.getDefinition();
+            Assert.fail("Generated machine has no definition");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("OrderFsm is generated from annotations"));
+        }
+        try {
+            order.addTransition("new", "shipped");
+            Assert.fail("Generated machine can not be changed");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void reportsMistakes() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+        String source = "package sample;\n"
+                + "import me.bvn13.fsm.annotation.*;\n"
+                + "@StateMachine\n"
+                + "@FsmState(name = \"init\", initial = true, processor = \"missing\")\n"
+                + "@FsmTransition(from = \"init\", to = \"unknown\")\n"
+                + "@FsmTransition(from = \"init\", to = \"init\", guard = \"notBoolean\")\n"
+                + "public abstract class Broken extends me.bvn13.fsm.Fsm<Broken, String> {\n"
+                + "    void notBoolean(String event) {}\n"
+                + "}\n";
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///sample/Broken.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-d", folder.getRoot().getPath(), "-classpath", System.getProperty("java.class.path")),
+                null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new StateMachineProcessor()));
+        Assert.assertFalse(task.call());
+        List<String> errors = diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(
+                "Unable to find non-private method void missing(java.lang.String)",
+                "Unable to find state 'unknown' of transition from 'init' to 'unknown'",
+                "Unable to find non-private method boolean notBoolean(java.lang.String)"), errors);
+    }
+
+}
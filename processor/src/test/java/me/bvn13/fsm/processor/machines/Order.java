@@ -0,0 +1,52 @@
+package me.bvn13.fsm.processor.machines;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.annotation.FsmState;
+import me.bvn13.fsm.annotation.FsmTransition;
+import me.bvn13.fsm.annotation.StateMachine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@StateMachine
+@FsmState(name = "new", initial = true, before = "created")
+@FsmState(name = "paid", processor = "charge", after = "charged")
+@FsmState(name = "cancelled", finish = true)
+@FsmState(name = "shipped", finish = true, before = "ship")
+@FsmTransition(from = "new", to = "paid", guard = "isPayment")
+@FsmTransition(from = "new", to = "cancelled", guard = "isCancel")
+@FsmTransition(from = "paid", to = "shipped", guard = "isShipment")
+@FsmTransition(from = "paid", to = "cancelled", guard = "isCancel", priority = 1)
+public abstract class Order extends Fsm<Order, String> {
+
+    public final List<String> log = new ArrayList<>();
+
+    boolean isPayment(String event) {
+        return event.startsWith("pay");
+    }
+
+    boolean isShipment(String event) {
+        return "ship".equals(event);
+    }
+
+    boolean isCancel(CharSequence event) {
+        return "cancel".contentEquals(event) || "pay and cancel".contentEquals(event);
+    }
+
+    void created() {
+        log.add("created");
+    }
+
+    void charge(String event) {
+        log.add("charge " + event);
+    }
+
+    void charged() {
+        log.add("charged");
+    }
+
+    void ship() {
+        log.add("shipped");
+    }
+
+}
@@ -0,0 +1,27 @@
+package me.bvn13.fsm.processor.machines;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.ResolutionPolicy;
+import me.bvn13.fsm.annotation.FsmState;
+import me.bvn13.fsm.annotation.FsmTransition;
+import me.bvn13.fsm.annotation.StateMachine;
+
+@StateMachine(name = "GeneratedSwitch", resolutionPolicy = ResolutionPolicy.FIRST_MATCH)
+@FsmState(name = "off", initial = true)
+@FsmState(name = "on")
+@FsmState(name = "broken")
+@FsmTransition(from = "off", to = "on", guard = "isToggle")
+@FsmTransition(from = "off", to = "off")
+@FsmTransition(from = "on", to = "off", guard = "isToggle")
+@FsmTransition(from = "on", to = "broken", guard = "isHammer", priority = 1)
+public abstract class Switch extends Fsm<Switch, Integer> {
+
+    boolean isToggle(Integer event) {
+        return event == 1;
+    }
+
+    boolean isHammer(Integer event) {
+        return event == 42;
+    }
+
+}
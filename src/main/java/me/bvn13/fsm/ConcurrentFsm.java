@@ -0,0 +1,154 @@
+package me.bvn13.fsm;
+
+import me.bvn13.fsm.exceptions.FsmException;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * <b>Thread-safe FSM</b>
+ * </p>
+ *
+ * <p>
+ * Current state, previous state and <code>done</code> flag are packed into a single {@link AtomicLong},
+ * so events may be processed from several threads without locking, and current state may be read at any moment.
+ *
+ * <p>
+ * Racing events are resolved optimistically: a thread processes the event in the state it has read and
+ * publishes the next state with compare-and-set. If another thread has moved FSM in the meantime, the event is
+ * processed again in the new state. Thus:
+ * <ol>
+ *     <li>processors and conditions may be called more than once for the same event and must tolerate it
+ *     (e.g. be side effect free)</li>
+ *     <li>each transition is published exactly once, after handler and before handler are called once per
+ *     transition by the thread which has published it, after publishing</li>
+ *     <li>handlers are not serialized: once a transition is published, another thread may publish the next one
+ *     and call its handlers while handlers of the former are still running or have not been called yet, so
+ *     handlers of consecutive transitions may run concurrently and out of order of the transitions. Handlers
+ *     must not rely on the current state and must synchronize access to shared data themselves.</li>
+ * </ol>
+ *
+ * @param <E> the type of Events
+ */
+public class ConcurrentFsm<E> extends Fsm<ConcurrentFsm<E>, E> {
+
+    private static final long DONE = 1L;
+
+    private final AtomicLong snapshot = new AtomicLong(pack(FsmDefinition.NO_STATE, FsmDefinition.NO_STATE, false));
+
+    @Override
+    public void init() {
+        snapshot.set(pack(getDefinition().getInitialStateId(), FsmDefinition.NO_STATE, false));
+        super.init();
+    }
+
+    @Override
+    public void process(E event) {
+        step(getDefinition(), event);
+    }
+
+    @Override
+    boolean step(FsmDefinition<ConcurrentFsm<E>, E> definition, E event) {
+        FsmInstrumentation instrumentation = definition.instrumentation;
+        try {
+            return publish(definition, instrumentation, event);
+        } catch (FsmException e) {
+            throw withHistory(e);
+        }
+    }
+
+    private boolean publish(FsmDefinition<ConcurrentFsm<E>, E> definition, FsmInstrumentation instrumentation, E event) {
+        long started = instrumentation == null ? 0 : System.nanoTime();
+        while (true) {
+            long observed = snapshot.get();
+            if ((observed & DONE) != 0) {
+                return true;
+            }
+            int current = current(observed);
+            State<E> state = definition.getState(current);
+            handle(instrumentation, state, current, event);
+            if (state.isFinish()) {
+                if (snapshot.compareAndSet(observed, pack(current, previous(observed), true))) {
+                    exit(instrumentation, state, current);
+                    exitAncestors(definition, instrumentation, current, FsmDefinition.NO_STATE);
+                    stepped(instrumentation, current, current, started);
+                    return true;
+                }
+                continue;
+            }
+            int next = definition.nextState(this, current, event);
+            if (snapshot.compareAndSet(observed, pack(next, current, false))) {
+                exit(instrumentation, state, current);
+                exitAncestors(definition, instrumentation, current, next);
+                record(current, next);
+                if (instrumentation != null) {
+                    instrumentation.transition(current, next);
+                }
+                enterAncestors(definition, instrumentation, current, next);
+                enter(instrumentation, definition.getState(next), next);
+                stepped(instrumentation, current, next, started);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Racing threads may check guards for different events at once, so results of shared guards are not kept
+     */
+    @Override
+    boolean checkGuard(int slot, Condition<ConcurrentFsm<E>, E> condition, E event) {
+        return condition.check(this, event);
+    }
+
+    @Override
+    public State<E> getCurrentState() {
+        int current = getCurrentStateId();
+        return current == FsmDefinition.NO_STATE ? null : getDefinition().getState(current);
+    }
+
+    @Override
+    public State<E> getPreviousState() {
+        int previous = getPreviousStateId();
+        return previous == FsmDefinition.NO_STATE ? null : getDefinition().getState(previous);
+    }
+
+    @Override
+    public int getCurrentStateId() {
+        return current(snapshot.get());
+    }
+
+    @Override
+    public int getPreviousStateId() {
+        return previous(snapshot.get());
+    }
+
+    @Override
+    public boolean isDone() {
+        return (snapshot.get() & DONE) != 0;
+    }
+
+    @Override
+    protected void setCurrentState(String name) {
+        super.setCurrentState(name);
+        snapshot.set(pack(super.getCurrentStateId(), FsmDefinition.NO_STATE, done));
+    }
+
+    @Override
+    void restore(int current, int previous, boolean done) {
+        super.restore(current, previous, done);
+        snapshot.set(pack(current, previous, done));
+    }
+
+    private static long pack(int current, int previous, boolean done) {
+        return ((long) (previous + 1) << 32) | ((long) (current + 1) << 1) | (done ? DONE : 0);
+    }
+
+    private static int current(long snapshot) {
+        return (int) ((snapshot & 0xFFFFFFFFL) >>> 1) - 1;
+    }
+
+    private static int previous(long snapshot) {
+        return (int) (snapshot >>> 32) - 1;
+    }
+
+}
@@ -1,45 +1,143 @@
 package me.bvn13.fsm;
 
-public class ConditionBuilder<T extends Fsm, E> {
+import java.util.Objects;
+import java.util.function.Function;
 
-    private final FsmBuilder<T,E> fsmBuilder;
-    private final StateBuilder<T, E> stateBuilder;
+public class ConditionBuilder<T extends Fsm, E, S extends Enum<S>> {
+
+    private final FsmBuilder<T,E,S> fsmBuilder;
+    private final StateBuilder<T,E,S> stateBuilder;
     private String from;
     private String to;
     private Condition<T,E> condition;
+    private int priority;
+    private String exclusiveGroup;
+    private Object trigger;
+    private Guard guard;
+    private Function<? super E, ?> keyExtractor;
+    private Object key;
 
-    ConditionBuilder(FsmBuilder<T,E> fsmBuilder) {
+    ConditionBuilder(FsmBuilder<T,E,S> fsmBuilder) {
         this.fsmBuilder = fsmBuilder;
         this.stateBuilder = null;
     }
 
-    ConditionBuilder(FsmBuilder<T,E> fsmBuilder, StateBuilder<T, E> stateBuilder, String from) {
+    ConditionBuilder(FsmBuilder<T,E,S> fsmBuilder, StateBuilder<T,E,S> stateBuilder, String from) {
         this.fsmBuilder = fsmBuilder;
         this.stateBuilder = stateBuilder;
         this.from = from;
     }
 
-    public ConditionBuilder<T,E> from(String from) {
+    public ConditionBuilder<T,E,S> from(String from) {
         this.from = from;
         return this;
     }
 
-    public ConditionBuilder<T,E> to(String to) {
+    public ConditionBuilder<T,E,S> to(String to) {
         this.to = to;
         return this;
     }
 
-    public ConditionBuilder<T,E> checking(Condition<T,E> condition) {
+    public ConditionBuilder<T,E,S> from(S from) {
+        return from(fsmBuilder.addConstant(from));
+    }
+
+    public ConditionBuilder<T,E,S> to(S to) {
+        return to(fsmBuilder.addConstant(to));
+    }
+
+    public ConditionBuilder<T,E,S> checking(Condition<T,E> condition) {
         this.condition = condition;
+        this.guard = null;
+        this.keyExtractor = null;
+        return this;
+    }
+
+    /**
+     * To check shared guards declared with {@link FsmBuilder#withGuard(String, Condition)}: each of them is checked
+     * no more than once per event
+     *
+     * @param guard {@link Guard}
+     * @return this builder
+     */
+    public ConditionBuilder<T,E,S> checking(Guard guard) {
+        this.guard = guard;
+        this.condition = null;
+        this.keyExtractor = null;
+        return this;
+    }
+
+    /**
+     * To check the key of the event instead of a condition: <code>.when(Order::getType).equalsTo(Type.PAID)</code>.
+     * <p>
+     * Transitions from the same state checking the keys extracted by the same extractor instance are compiled into
+     * a single hash lookup from the key to the transitions, so keep the extractor in a constant to share it.
+     * Keys are compared with {@link Object#equals(Object)}.
+     *
+     * @param keyExtractor extractor of the key from the event
+     * @param <K>          the type of keys
+     * @return builder of the key check
+     */
+    public <K> KeyConditionBuilder<T,E,S,K> when(Function<? super E, ? extends K> keyExtractor) {
+        return new KeyConditionBuilder<>(this, keyExtractor);
+    }
+
+    ConditionBuilder<T,E,S> checkingKey(Function<? super E, ?> keyExtractor, Object key) {
+        this.condition = (fsm, event) -> event != null && Objects.equals(key, keyExtractor.apply(event));
+        this.guard = null;
+        this.keyExtractor = keyExtractor;
+        this.key = key;
+        return this;
+    }
+
+    /**
+     * To specify the order of checking transitions from the same state: the higher priority is checked first.
+     * Transitions of the same priority are checked in order of being declared. 0 by default.
+     *
+     * @param priority priority of the transition
+     * @return this builder
+     */
+    public ConditionBuilder<T,E,S> withPriority(int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * To declare the condition being mutually exclusive with conditions of the same group: no more than one of them
+     * is true for any event. If all transitions from a state belong to the same group, the state is deterministic
+     * and checking its transitions stops at the first appropriate one.
+     *
+     * @param exclusiveGroup name of the group
+     * @return this builder
+     */
+    public ConditionBuilder<T,E,S> inExclusiveGroup(String exclusiveGroup) {
+        this.exclusiveGroup = exclusiveGroup;
+        return this;
+    }
+
+    /**
+     * To declare the trigger of the transition: the transition is checked only for events having this trigger.
+     * The trigger of an event is its class (exact one, not a superclass) unless another way is specified with
+     * {@link FsmBuilder#withTriggerExtractor(java.util.function.Function)}.
+     * <p>
+     * Transitions of every state are indexed by triggers, so only the transitions registered for the trigger of
+     * incoming event and transitions without trigger are checked.
+     *
+     * @param trigger event class or trigger key
+     * @return this builder
+     */
+    public ConditionBuilder<T,E,S> on(Object trigger) {
+        this.trigger = trigger;
         return this;
     }
 
-    public FsmBuilder<T,E> end() {
-        fsmBuilder.addTransition(from, to, condition);
+    public FsmBuilder<T,E,S> end() {
+        fsmBuilder.addTransition(from, new Transition<>(to, condition, priority, exclusiveGroup, trigger, guard,
+                keyExtractor, key));
         return fsmBuilder;
     }
 
-    public StateBuilder<T, E> endTransition() {
+    public StateBuilder<T,E,S> endTransition() {
         if (stateBuilder == null) {
             throw new IllegalStateException("Use '.end()' instead");
         }
@@ -0,0 +1,88 @@
+package me.bvn13.fsm;
+
+import me.bvn13.fsm.dummy.DummyHandler;
+import me.bvn13.fsm.dummy.DummyProcessor;
+
+import static java.lang.String.format;
+
+/**
+ * State created by {@link StateBuilder}.
+ * <p>
+ * Holds no reference to any FSM instance, so it can be shared by every instance created from one
+ * {@link FsmDefinition}: handlers and processor receive the instance being processed. Handlers and processor
+ * left {@link DummyHandler} and {@link DummyProcessor} are not called at all.
+ * <p>
+ * As there is no instance to pass to the handlers, {@link #beforeEvent()}, {@link #afterEvent()} and
+ * {@link #process(Object)} inherited from {@link StateBehaviour} throw {@link UnsupportedOperationException}
+ * instead of silently doing nothing.
+ *
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ */
+final class DefinedState<T extends Fsm, E> extends State<E> {
+
+    private final StateHandler<T> beforeHandler;
+    private final StateHandler<T> afterHandler;
+    private final StateProcessor<T, E> processor;
+
+    DefinedState(String name,
+                 boolean finish,
+                 StateHandler<T> beforeHandler,
+                 StateHandler<T> afterHandler,
+                 StateProcessor<T, E> processor) {
+        super(name, finish);
+        this.beforeHandler = unlessDummy(beforeHandler, DummyHandler.class);
+        this.afterHandler = unlessDummy(afterHandler, DummyHandler.class);
+        this.processor = unlessDummy(processor, DummyProcessor.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void enter(Fsm fsm) {
+        if (beforeHandler != null) {
+            beforeHandler.handle((T) fsm);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void exit(Fsm fsm) {
+        if (afterHandler != null) {
+            afterHandler.handle((T) fsm);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void handle(Fsm fsm, E event) {
+        if (processor != null) {
+            processor.process((T) fsm, event);
+        }
+    }
+
+    @Override
+    public void beforeEvent() {
+        throw unbound();
+    }
+
+    @Override
+    public void afterEvent() {
+        throw unbound();
+    }
+
+    @Override
+    public void process(E event) {
+        throw unbound();
+    }
+
+    private UnsupportedOperationException unbound() {
+        return new UnsupportedOperationException(format(
+                "State '%s' is shared by FSM instances, its handlers are called by the instance being processed only",
+                getName()));
+    }
+
+    private static <H> H unlessDummy(H handler, Class<?> dummy) {
+        return handler == null || handler.getClass() == dummy ? null : handler;
+    }
+
+}
@@ -0,0 +1,62 @@
+package me.bvn13.fsm;
+
+/**
+ * FSM with states being constants of an enum.
+ * <p>
+ * States are declared with enum constants instead of names:
+ *
+ * <pre>
+ *  {@code
+ *  EnumFsm<Phase, String> fsm = Fsm
+ *    .<EnumFsm<Phase, String>, String>from(EnumFsm::new)
+ *    .withStates(Phase.class)
+ *      .from(Phase.INIT)
+ *      .withTransition()
+ *        .to(Phase.DONE)
+ *      .endTransition()
+ *    .end()
+ *    .finish(Phase.DONE)
+ *    .end()
+ *    .create();
+ *  }
+ * </pre>
+ * <p>
+ * Constants are resolved by state id through arrays of the definition, so comparing states in handlers is
+ * a reference check: {@code fsm.getCurrent() == Phase.DONE}.
+ *
+ * @param <S> the type of States
+ * @param <E> the type of Events
+ */
+public class EnumFsm<S extends Enum<S>, E> extends Fsm<EnumFsm<S, E>, E> {
+
+    /**
+     * Returns current state
+     *
+     * @return constant of current state
+     */
+    @SuppressWarnings("unchecked")
+    public S getCurrent() {
+        return (S) getDefinition().getStateConstant(getCurrentStateId());
+    }
+
+    /**
+     * Returns previous state
+     *
+     * @return constant of previous state or <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public S getPrevious() {
+        return (S) getDefinition().getStateConstant(getPreviousStateId());
+    }
+
+    /**
+     * Checks whether FSM is in the state
+     *
+     * @param state constant of the state
+     * @return <code>true</code> if current state is the given one
+     */
+    public boolean is(S state) {
+        return getCurrent() == state;
+    }
+
+}
@@ -0,0 +1,154 @@
+package me.bvn13.fsm;
+
+import me.bvn13.fsm.exceptions.TransitionHistoryException;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * Ring buffer of the last transitions of an FSM instance, see {@link FsmBuilder#withFlightRecorder(int)}
+ * </p>
+ *
+ * <p>
+ * Arrays of the buffer are allocated once with the instance, recording a transition stores its source and target
+ * state ids and {@link System#nanoTime()} only, so it may be left enabled in production. Index of the transition
+ * which has fired is not stored: there is a single transition between two states, so it is resolved while reading.
+ * When processing of an event fails with {@link me.bvn13.fsm.exceptions.FsmException}, recorded transitions are
+ * attached to it as suppressed {@link TransitionHistoryException}.
+ *
+ * <p>
+ * Records are indexed from the oldest one (<code>0</code>) to the latest one (<code>size() - 1</code>). The buffer
+ * is not synchronized: transitions of {@link ConcurrentFsm} published by racing threads may overwrite each other.
+ */
+public final class FlightRecorder {
+
+    private final FsmDefinition<?, ?> definition;
+    private final int[] from;
+    private final int[] to;
+    private final long[] nanoTimes;
+    private int position;
+    private long recorded;
+
+    FlightRecorder(FsmDefinition<?, ?> definition, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.definition = definition;
+        this.from = new int[capacity];
+        this.to = new int[capacity];
+        this.nanoTimes = new long[capacity];
+    }
+
+    void record(int from, int to) {
+        int i = position;
+        this.from[i] = from;
+        this.to[i] = to;
+        this.nanoTimes[i] = System.nanoTime();
+        position = i + 1 == this.from.length ? 0 : i + 1;
+        recorded++;
+    }
+
+    /**
+     * Returns maximum number of transitions kept
+     *
+     * @return capacity of the buffer
+     */
+    public int getCapacity() {
+        return from.length;
+    }
+
+    /**
+     * Returns number of transitions kept
+     *
+     * @return <code>min(getRecorded(), getCapacity())</code>
+     */
+    public int size() {
+        return (int) Math.min(recorded, from.length);
+    }
+
+    /**
+     * Returns number of transitions recorded since the instance has been created, including overwritten ones
+     *
+     * @return number of transitions
+     */
+    public long getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * Returns id of the state the transition was made from
+     *
+     * @param i index of the record, <code>0</code> is the oldest one
+     * @return State id
+     */
+    public int getFrom(int i) {
+        return from[slot(i)];
+    }
+
+    /**
+     * Returns id of the state the transition was made to
+     *
+     * @param i index of the record, <code>0</code> is the oldest one
+     * @return State id
+     */
+    public int getTo(int i) {
+        return to[slot(i)];
+    }
+
+    /**
+     * Returns the time the transition was made at
+     *
+     * @param i index of the record, <code>0</code> is the oldest one
+     * @return {@link System#nanoTime()} of the transition
+     */
+    public long getNanoTime(int i) {
+        return nanoTimes[slot(i)];
+    }
+
+    /**
+     * Returns index of the transition which has fired among transitions of its source state in order of checking
+     *
+     * @param i index of the record, <code>0</code> is the oldest one
+     * @return index of the transition
+     */
+    public int getTransitionIndex(int i) {
+        int slot = slot(i);
+        return definition.getTransitionIndex(from[slot], to[slot]);
+    }
+
+    /**
+     * Forgets recorded transitions
+     */
+    public void clear() {
+        position = 0;
+        recorded = 0;
+    }
+
+    /**
+     * Returns recorded transitions, one per line, from the oldest one to the latest one
+     *
+     * @return text, time of each transition is relative to the moment of dumping
+     */
+    public String dump() {
+        long now = System.nanoTime();
+        int size = size();
+        StringBuilder text = new StringBuilder(format("Last %d of %d transitions:", size, recorded));
+        for (int i = 0; i < size; i++) {
+            text.append(format("%n  -%.6f s  %s -> %s (transition #%d)",
+                    (now - getNanoTime(i)) / 1e9,
+                    definition.getState(getFrom(i)).getName(),
+                    definition.getState(getTo(i)).getName(),
+                    getTransitionIndex(i)));
+        }
+        return text.toString();
+    }
+
+    private int slot(int i) {
+        int size = size();
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(format("Record %d is out of [0, %d)", i, size));
+        }
+        return (position - size + i + from.length) % from.length;
+    }
+
+}
@@ -1,15 +1,13 @@
 package me.bvn13.fsm;
 
-import me.bvn13.fsm.exceptions.AmbiguousTransitionException;
-import me.bvn13.fsm.exceptions.BrokenTransitionException;
-import me.bvn13.fsm.exceptions.ConditionAlreadyExistsException;
+import me.bvn13.fsm.exceptions.BatchProcessingException;
+import me.bvn13.fsm.exceptions.FsmException;
 import me.bvn13.fsm.exceptions.NotInitializedException;
-import me.bvn13.fsm.exceptions.StateAlreadyExistsException;
-import me.bvn13.fsm.exceptions.TransitionMissedException;
+import me.bvn13.fsm.exceptions.TransitionHistoryException;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -104,6 +102,11 @@ import static java.lang.String.format;
  * </pre>
  *
  * <p>
+ * When many instances of the same machine are needed (e.g. one per user session), build the
+ * {@link FsmDefinition} once with {@code .define()} instead of {@code .create()} and create instances from it:
+ * all of them share the states and transitions of the definition.
+ *
+ * <p>
  * Otherwise you are able to use Old syntax:
  *
  * <pre>
@@ -132,12 +135,23 @@ import static java.lang.String.format;
  */
 public class Fsm<T extends Fsm, E> {
 
+    /**
+     * Maximum number of guards shared by transitions, see {@link FsmBuilder#withGuard(String, Condition)}
+     */
+    static final int MAX_GUARDS = 32;
+
     protected boolean done = false;
-    protected State<E> initialState;
     protected State<E> currentState;
     protected State<E> previousState;
-    protected final Map<String, State<E>> states = new HashMap<>();
-    protected final Map<String, Map<String, Condition<T, E>>> transitions = new HashMap<>();
+    private int current = FsmDefinition.NO_STATE;
+    private int previous = FsmDefinition.NO_STATE;
+    private FsmDefinition<T, E> definition;
+    private FsmGraph<T, E> graph;
+    private FlightRecorder recorder;
+    /**
+     * Shared guards checked while processing current event (low bits) and their results (high bits)
+     */
+    private long guards;
 
     /**
      * Initiate a builder
@@ -156,13 +170,17 @@ public class Fsm<T extends Fsm, E> {
      * To initialize FSM into initial state
      */
     public void init() {
-        currentState = initialState;
-        if (currentState == null) {
+        FsmDefinition<T, E> definition = getDefinition();
+        current = definition.getInitialStateId();
+        if (current == FsmDefinition.NO_STATE) {
             throw new NotInitializedException();
         }
+        currentState = definition.getState(current);
         done = false;
+        previous = FsmDefinition.NO_STATE;
         previousState = null;
-        currentState.beforeEvent();
+        enterAncestors(definition, definition.instrumentation, FsmDefinition.NO_STATE, current);
+        enter(definition.instrumentation, currentState, current);
     }
 
     /**
@@ -170,18 +188,79 @@ public class Fsm<T extends Fsm, E> {
      *
      * @param event event
      */
-    @SuppressWarnings("unchecked")
     public void process(E event) {
         if (done) {
             return;
         }
-        currentState.process(event);
-        if (currentState.isFinish()) {
-            done = true;
-            currentState.afterEvent();
-            return;
+        step(getDefinition(), event);
+    }
+
+    /**
+     * Processes the events in order until FSM is done
+     *
+     * @param events events
+     * @return number of events processed, including the one processed in finishing state
+     * @throws BatchProcessingException if processing of an event has failed, the events before it are processed;
+     *                                  exceptions thrown by the iterator of the events are rethrown as they are
+     */
+    public int processAll(Iterable<? extends E> events) {
+        if (isDone()) {
+            return 0;
+        }
+        FsmDefinition<T, E> definition = getDefinition();
+        Iterator<? extends E> iterator = events.iterator();
+        int processed = 0;
+        try {
+            while (iterator.hasNext()) {
+                E event = iterator.next();
+                boolean finished;
+                try {
+                    finished = step(definition, event);
+                } catch (RuntimeException e) {
+                    throw new BatchProcessingException(processed, e);
+                }
+                processed++;
+                if (finished) {
+                    break;
+                }
+            }
+        } finally {
+            afterBatch(processed);
+        }
+        return processed;
+    }
+
+    /**
+     * Processes the events <code>events[from] .. events[to - 1]</code> in order until FSM is done
+     *
+     * @param events events
+     * @param from   index of the first event to process, inclusive
+     * @param to     index of the last event to process, exclusive
+     * @return number of events processed, including the one processed in finishing state
+     * @throws BatchProcessingException if processing of an event has failed, the events before it are processed
+     */
+    public int processAll(E[] events, int from, int to) {
+        if (from < 0 || to > events.length || from > to) {
+            throw new IndexOutOfBoundsException(format("Range [%d, %d) is out of [0, %d)", from, to, events.length));
+        }
+        if (isDone()) {
+            return 0;
+        }
+        FsmDefinition<T, E> definition = getDefinition();
+        int i = from;
+        try {
+            while (i < to) {
+                if (step(definition, events[i++])) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            i--;
+            throw new BatchProcessingException(i - from, e);
+        } finally {
+            afterBatch(i - from);
         }
-        switchToNextState(event);
+        return i - from;
     }
 
     /**
@@ -202,6 +281,57 @@ public class Fsm<T extends Fsm, E> {
         return previousState;
     }
 
+    /**
+     * Returns whether FSM has processed an event in finishing state, then it ignores further events
+     *
+     * @return <code>true</code> if FSM is done
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns id of current state
+     *
+     * @return State id, see {@link FsmDefinition#getState(int)}
+     */
+    public int getCurrentStateId() {
+        return current;
+    }
+
+    /**
+     * Returns id of previous state
+     *
+     * @return State id or {@link FsmDefinition#NO_STATE}
+     */
+    public int getPreviousStateId() {
+        return previous;
+    }
+
+    /**
+     * Returns the last transitions of this FSM, see {@link FsmBuilder#withFlightRecorder(int)}
+     *
+     * @return {@link FlightRecorder} or <code>null</code> if the definition is built without it
+     */
+    public FlightRecorder getFlightRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Returns the definition this FSM is working with
+     *
+     * @return {@link FsmDefinition}
+     */
+    public FsmDefinition<T, E> getDefinition() {
+        if (definition == null) {
+            if (graph == null) {
+                throw new NotInitializedException();
+            }
+            definition = graph.compile(null);
+        }
+        return definition;
+    }
+
     /**
      * To specify initial state
      *
@@ -209,8 +339,7 @@ public class Fsm<T extends Fsm, E> {
      */
     public void initState(State<E> state) {
         state.setFSM(this);
-        addState(state);
-        initialState = state;
+        graph().initState(state);
     }
 
     /**
@@ -219,9 +348,8 @@ public class Fsm<T extends Fsm, E> {
      * @param state {@link State}
      */
     public void addState(State<E> state) {
-        checkStateExist(state.getName());
         state.setFSM(this);
-        this.states.put(state.getName(), state);
+        graph().addState(state);
     }
 
     /**
@@ -231,7 +359,7 @@ public class Fsm<T extends Fsm, E> {
      * @param toState   {@link State}
      */
     public void addTransition(String fromState, String toState) {
-        storeTransition(fromState, toState, null);
+        graph().addTransition(fromState, toState, null);
     }
 
     /**
@@ -242,7 +370,7 @@ public class Fsm<T extends Fsm, E> {
      * @param condition {@link Condition}
      */
     public void addTransition(String fromState, String toState, Condition<T, E> condition) {
-        storeTransition(fromState, toState, condition);
+        graph().addTransition(fromState, toState, condition);
     }
 
     /**
@@ -269,62 +397,299 @@ public class Fsm<T extends Fsm, E> {
     }
 
     /**
-     * Provides a possibility to initialize FSM in custom State
+     * To specify the way the next state is chosen, {@link ResolutionPolicy#STRICT} by default
+     *
+     * @param resolutionPolicy {@link ResolutionPolicy}
+     */
+    public void setResolutionPolicy(ResolutionPolicy resolutionPolicy) {
+        graph().setResolutionPolicy(resolutionPolicy);
+    }
+
+    /**
+     * Provides a possibility to initialize FSM in custom State, the first state nested into it if there is any
      * @param name State name (must be added before)
      */
     protected void setCurrentState(String name) {
-        try {
-            this.currentState = this.states.get(name);
-        } catch (NullPointerException e) {
-            throw new NotInitializedException(format("Unable to find state '%s'", name), e);
+        FsmDefinition<T, E> definition = getDefinition();
+        int id = definition.getStateId(name);
+        if (id == FsmDefinition.NO_STATE) {
+            throw new NotInitializedException(format("Unable to find state '%s'", name));
         }
+        id = definition.leaf(id);
+        this.current = id;
+        this.currentState = definition.getState(id);
         this.done = currentState.isFinish();
     }
 
-    private void switchToNextState(E event) {
-        if (!transitions.containsKey(currentState.getName())) {
-            throw new TransitionMissedException(currentState.getName());
-        }
-        Map<String, Condition<T, E>> conditions = transitions.get(currentState.getName());
-        List<String> nextStates = new ArrayList<>();
-        for (String key : conditions.keySet()) {
-            if (conditions.get(key) == null) {
-                nextStates.add(key);
-            } else if (conditions.get(key).check((T) this, event)) {
-                nextStates.add(key);
+    /**
+     * Is called once per batch after {@link #processAll(Iterable)} or {@link #processAll(Object[], int, int)}
+     * has processed the events, e.g. to notify listeners or update metrics once instead of once per event
+     *
+     * @param processed number of events processed
+     */
+    protected void afterBatch(int processed) {
+    }
+
+    void bind(FsmDefinition<T, E> definition) {
+        this.definition = definition;
+        this.recorder = definition.flightRecorderCapacity > 0
+                ? new FlightRecorder(definition, definition.flightRecorderCapacity)
+                : null;
+    }
+
+    /**
+     * Puts FSM into saved state without calling any handler
+     */
+    void restore(int current, int previous, boolean done) {
+        FsmDefinition<T, E> definition = getDefinition();
+        this.current = current;
+        this.previous = previous;
+        this.currentState = current == FsmDefinition.NO_STATE ? null : definition.getState(current);
+        this.previousState = previous == FsmDefinition.NO_STATE ? null : definition.getState(previous);
+        this.done = done;
+    }
+
+    /**
+     * Processes the event in current state and moves to the next one
+     *
+     * @return <code>true</code> if FSM is done
+     */
+    @SuppressWarnings("unchecked")
+    boolean step(FsmDefinition<T, E> definition, E event) {
+        FsmInstrumentation instrumentation = definition.instrumentation;
+        long started = instrumentation == null ? 0 : System.nanoTime();
+        try {
+            handle(instrumentation, currentState, current, event);
+            if (currentState.isFinish()) {
+                done = true;
+                exit(instrumentation, currentState, current);
+                exitAncestors(definition, instrumentation, current, FsmDefinition.NO_STATE);
+                stepped(instrumentation, current, current, started);
+                return true;
             }
+            nextState(definition, instrumentation, definition.nextState((T) this, current, event));
+            stepped(instrumentation, previous, current, started);
+            return false;
+        } catch (FsmException e) {
+            throw withHistory(e);
+        }
+    }
+
+    /**
+     * Attaches recorded transitions to the exception if there is {@link FlightRecorder}
+     */
+    final FsmException withHistory(FsmException e) {
+        if (recorder != null && recorder.size() > 0 && !(e instanceof TransitionHistoryException)) {
+            e.addSuppressed(new TransitionHistoryException(recorder.dump()));
+        }
+        return e;
+    }
+
+    /**
+     * Forgets results of shared guards checked for the previous event
+     */
+    void resetGuards() {
+        guards = 0;
+    }
+
+    /**
+     * Checks shared guard no more than once per event, see {@link Guard}
+     */
+    @SuppressWarnings("unchecked")
+    boolean checkGuard(int slot, Condition<T, E> condition, E event) {
+        long checked = 1L << slot;
+        long passed = checked << MAX_GUARDS;
+        if ((guards & checked) != 0) {
+            return (guards & passed) != 0;
+        }
+        boolean result = condition.check((T) this, event);
+        guards |= result ? checked | passed : checked;
+        return result;
+    }
+
+    /**
+     * Reports execution time of the step if there is instrumentation
+     */
+    final void stepped(FsmInstrumentation instrumentation, int from, int to, long started) {
+        if (instrumentation != null) {
+            instrumentation.stepped(from, to, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Records the transition if there is {@link FlightRecorder}
+     */
+    final void record(int from, int to) {
+        if (recorder != null) {
+            recorder.record(from, to);
+        }
+    }
+
+    /**
+     * Calls the before handler of the state measuring it if there is instrumentation
+     */
+    final void enter(FsmInstrumentation instrumentation, State<E> state, int id) {
+        if (instrumentation == null) {
+            state.enter(this);
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            state.enter(this);
+        } catch (RuntimeException e) {
+            instrumentation.failed(id, e);
+            throw e;
         }
-        if (nextStates.size() > 1) {
-            throw new AmbiguousTransitionException(currentState.getName(), nextStates);
+        instrumentation.entered(id, System.nanoTime() - started);
+    }
+
+    /**
+     * Calls the after handler of the state measuring it if there is instrumentation
+     */
+    final void exit(FsmInstrumentation instrumentation, State<E> state, int id) {
+        if (instrumentation == null) {
+            state.exit(this);
+            return;
         }
-        if (nextStates.size() == 0) {
-            throw new BrokenTransitionException(currentState.getName());
+        long started = System.nanoTime();
+        try {
+            state.exit(this);
+        } catch (RuntimeException e) {
+            instrumentation.failed(id, e);
+            throw e;
         }
-        State<E> nextState = states.get(nextStates.get(0));
-        nextState(nextState, event);
+        instrumentation.exited(id, System.nanoTime() - started);
     }
 
-    private void nextState(State<E> state, E event) {
-        currentState.afterEvent();
+    /**
+     * Calls after handlers of the states containing the source state but not the target one, innermost first
+     *
+     * @param to id of the target state or {@link FsmDefinition#NO_STATE} to leave every containing state
+     */
+    final void exitAncestors(FsmDefinition<T, E> definition, FsmInstrumentation instrumentation, int from, int to) {
+        int[][] ancestors = definition.ancestors;
+        if (ancestors == null) {
+            return;
+        }
+        int[] chain = ancestors[from];
+        int left = chain.length - (to == FsmDefinition.NO_STATE ? 0 : definition.commonAncestors(from, to));
+        for (int i = 0; i < left; i++) {
+            exit(instrumentation, definition.getState(chain[i]), chain[i]);
+        }
+    }
+
+    /**
+     * Calls before handlers of the states containing the target state but not the source one, outermost first
+     *
+     * @param from id of the source state or {@link FsmDefinition#NO_STATE} to enter every containing state
+     */
+    final void enterAncestors(FsmDefinition<T, E> definition, FsmInstrumentation instrumentation, int from, int to) {
+        int[][] ancestors = definition.ancestors;
+        if (ancestors == null) {
+            return;
+        }
+        int[] chain = ancestors[to];
+        int entered = chain.length - (from == FsmDefinition.NO_STATE ? 0 : definition.commonAncestors(from, to));
+        for (int i = entered - 1; i >= 0; i--) {
+            enter(instrumentation, definition.getState(chain[i]), chain[i]);
+        }
+    }
+
+    /**
+     * Calls the processor of the state measuring it if there is instrumentation
+     */
+    final void handle(FsmInstrumentation instrumentation, State<E> state, int id, E event) {
+        if (instrumentation == null) {
+            state.handle(this, event);
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            state.handle(this, event);
+        } catch (RuntimeException e) {
+            instrumentation.failed(id, e);
+            throw e;
+        }
+        instrumentation.processed(id, System.nanoTime() - started);
+    }
+
+    private void nextState(FsmDefinition<T, E> definition, FsmInstrumentation instrumentation, int state) {
+        exit(instrumentation, currentState, current);
+        exitAncestors(definition, instrumentation, current, state);
+        previous = current;
         previousState = currentState;
-        currentState = state;
-        currentState.beforeEvent();
+        current = state;
+        currentState = definition.getState(state);
+        record(previous, current);
+        if (instrumentation != null) {
+            instrumentation.transition(previous, current);
+        }
+        enterAncestors(definition, instrumentation, previous, current);
+        enter(instrumentation, currentState, current);
+    }
+
+    /**
+     * Returns initial state
+     *
+     * @return {@link State}
+     * @deprecated replaces the field <code>initialState</code> removed since states are kept by
+     * {@link FsmDefinition}, use {@link FsmDefinition#getInitialState()}
+     */
+    @Deprecated
+    protected State<E> getInitialState() {
+        return getDefinition().getInitialState();
     }
 
-    private void checkStateExist(String name) throws StateAlreadyExistsException {
-        if (this.states.containsKey(name)) {
-            throw new StateAlreadyExistsException(name);
+    /**
+     * Returns read-only view of the states by names
+     *
+     * @return states by names
+     * @deprecated replaces the field <code>states</code> removed since states are kept by {@link FsmDefinition},
+     * use {@link FsmDefinition#getStates()}
+     */
+    @Deprecated
+    protected Map<String, State<E>> getStates() {
+        Map<String, State<E>> states = new LinkedHashMap<>();
+        for (State<E> state : getDefinition().getStates()) {
+            states.put(state.getName(), state);
         }
+        return Collections.unmodifiableMap(states);
     }
 
-    private void storeTransition(String fromState, String toState, Condition<T, E> condition) {
-        if (!transitions.containsKey(fromState)) {
-            transitions.put(fromState, new HashMap<>());
+    /**
+     * Returns read-only view of the conditions of transitions by names of source and target states
+     *
+     * @return conditions by names of target states by names of source states
+     * @deprecated replaces the field <code>transitions</code> removed since transitions are compiled by
+     * {@link FsmDefinition}
+     */
+    @Deprecated
+    protected Map<String, Map<String, Condition<T, E>>> getTransitions() {
+        FsmDefinition<T, E> definition = getDefinition();
+        Map<String, Map<String, Condition<T, E>>> transitions = new LinkedHashMap<>();
+        for (int from = 0; from < definition.getStateCount(); from++) {
+            TransitionTable<T, E> table = definition.getTransitions(from);
+            if (table == null) {
+                continue;
+            }
+            Map<String, Condition<T, E>> conditions = new LinkedHashMap<>();
+            for (int i = 0; i < table.targets.length; i++) {
+                conditions.putIfAbsent(definition.getState(table.targets[i]).getName(), table.conditions[i]);
+            }
+            transitions.put(definition.getState(from).getName(), Collections.unmodifiableMap(conditions));
         }
-        if (transitions.get(fromState).containsKey(toState)) {
-            throw new ConditionAlreadyExistsException(fromState, toState);
+        return Collections.unmodifiableMap(transitions);
+    }
+
+    private FsmGraph<T, E> graph() {
+        if (graph == null) {
+            if (definition != null) {
+                throw new IllegalStateException("FSM is bound to a shared definition");
+            }
+            graph = new FsmGraph<>();
         }
-        transitions.get(fromState).put(toState, condition);
+        definition = null;
+        return graph;
     }
 
 }
@@ -1,57 +1,175 @@
 package me.bvn13.fsm;
 
+import java.util.function.Function;
 import java.util.function.Supplier;
 
-public class FsmBuilder<T extends Fsm, E> {
+public class FsmBuilder<T extends Fsm, E, S extends Enum<S>> {
 
-    private final T fsm;
+    private final Supplier<T> supplier;
+    private final FsmGraph<T,E> graph = new FsmGraph<>();
 
     FsmBuilder(Supplier<T> supplier) {
-        fsm = supplier.get();
+        this.supplier = supplier;
     }
 
-    public StateBuilder<T,E> from(String state) {
+    public StateBuilder<T,E,S> from(String state) {
         return new StateBuilder<>(this, state, true, false);
     }
 
-    public StateBuilder<T,E> state(String state) {
+    public StateBuilder<T,E,S> state(String state) {
         return new StateBuilder<>(this, state, false, false);
     }
 
-    public StateBuilder<T,E> finish(String state) {
+    public StateBuilder<T,E,S> finish(String state) {
         return new StateBuilder<>(this, state, false, true);
     }
 
-    public ConditionBuilder<T,E> withTransition() {
+    public StateBuilder<T,E,S> from(S state) {
+        return from(graph.addConstant(state));
+    }
+
+    public StateBuilder<T,E,S> state(S state) {
+        return state(graph.addConstant(state));
+    }
+
+    public StateBuilder<T,E,S> finish(S state) {
+        return finish(graph.addConstant(state));
+    }
+
+    public ConditionBuilder<T,E,S> withTransition() {
         return new ConditionBuilder<>(this);
     }
 
+    /**
+     * To specify the way the next state is chosen, {@link ResolutionPolicy#STRICT} by default
+     *
+     * @param resolutionPolicy {@link ResolutionPolicy}
+     * @return this builder
+     */
+    public FsmBuilder<T,E,S> withResolutionPolicy(ResolutionPolicy resolutionPolicy) {
+        graph.setResolutionPolicy(resolutionPolicy);
+        return this;
+    }
+
+    /**
+     * To specify how the trigger of an event is obtained, see {@link ConditionBuilder#on(Object)}.
+     * By default the trigger of an event is its class.
+     *
+     * @param triggerExtractor function returning the trigger of an event
+     * @return this builder
+     */
+    public FsmBuilder<T,E,S> withTriggerExtractor(Function<? super E, ?> triggerExtractor) {
+        graph.setTriggerExtractor(triggerExtractor);
+        return this;
+    }
+
+    /**
+     * To check the definition while building it: every state except finishing ones must have transitions,
+     * there must be no more than 1 unconditional transition from a state and it must not be mixed with
+     * conditional ones (with {@link ResolutionPolicy#FIRST_MATCH} it must be the last one to be checked instead).
+     * <p>
+     * Fails building with {@link me.bvn13.fsm.exceptions.TransitionMissedException},
+     * {@link me.bvn13.fsm.exceptions.AmbiguousTransitionException} or
+     * {@link me.bvn13.fsm.exceptions.UnreachableTransitionException} correspondingly.
+     *
+     * @return this builder
+     */
+    public FsmBuilder<T,E,S> withDeterminismCheck() {
+        graph.setDeterminismCheck(true);
+        return this;
+    }
+
+    /**
+     * To measure instances created by the definition: state changes, transitions, checks of conditions, execution
+     * time of handlers and processors, failures
+     *
+     * @param instrumentation {@link FsmInstrumentation}, e.g. {@link me.bvn13.fsm.metrics.FsmMetrics}
+     * @return this builder
+     */
+    public FsmBuilder<T,E,S> withInstrumentation(FsmInstrumentation instrumentation) {
+        graph.setInstrumentation(instrumentation);
+        return this;
+    }
+
+    /**
+     * To declare a guard shared by transitions, see {@link ConditionBuilder#checking(Guard)}. It is checked
+     * no more than once per event, however many transitions of the state refer to it. Up to
+     * 32 guards may be declared.
+     *
+     * @param name      name of the guard
+     * @param condition condition of the guard
+     * @return this builder
+     */
+    public FsmBuilder<T,E,S> withGuard(String name, Condition<T,E> condition) {
+        graph.addGuard(name, condition);
+        return this;
+    }
+
+    /**
+     * To compile choosing the next state from every state into a selector specialized by the shape of its transitions
+     * (no transitions, single unconditional or conditional one, several ones checked until the first appropriate
+     * one), so that it skips looking up the table, the trigger and the resolution policy. Triggered or keyed
+     * transitions and transitions resolved strictly are chosen the usual way.
+     *
+     * @return this builder
+     */
+    public FsmBuilder<T,E,S> withCompiledDispatch() {
+        graph.setCompiledDispatch(true);
+        return this;
+    }
+
+    /**
+     * To record the last transitions of each instance created by the definition into preallocated ring buffer,
+     * the transitions are attached to {@link me.bvn13.fsm.exceptions.FsmException} thrown while processing events
+     *
+     * @param capacity number of transitions kept by each instance
+     * @return this builder
+     * @see Fsm#getFlightRecorder()
+     */
+    public FsmBuilder<T,E,S> withFlightRecorder(int capacity) {
+        graph.setFlightRecorderCapacity(capacity);
+        return this;
+    }
+
+    /**
+     * Builds the definition to be shared by any number of FSM instances
+     *
+     * @return {@link FsmDefinition}
+     */
+    public FsmDefinition<T,E> define() {
+        return graph.compile(supplier);
+    }
+
     public T create() {
-        fsm.init();
-        return fsm;
+        return define().create();
     }
 
     public T startingAt(String name) {
-        fsm.setCurrentState(name);
-        return fsm;
+        return define().startingAt(name);
+    }
+
+    public T startingAt(S state) {
+        return define().startingAt(state);
     }
 
-    T getFsm() {
-        return fsm;
+    String addConstant(S state) {
+        return graph.addConstant(state);
     }
 
-    @SuppressWarnings("unchecked")
     void addState(State<E> state, boolean isInitial) {
         if (isInitial) {
-            fsm.initState(state);
+            graph.initState(state);
         } else {
-            fsm.addState(state);
+            graph.addState(state);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    void addTransition(String from, String to, Condition<T,E> condition) {
-        fsm.addTransition(from, to, condition);
+    void addParent(String state, String parent) {
+        graph.addParent(state, parent);
+    }
+
+    void addTransition(String from, Transition<T,E> transition) {
+        graph.addTransition(from, transition);
     }
 
 }
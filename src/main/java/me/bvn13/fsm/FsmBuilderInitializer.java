@@ -10,8 +10,30 @@ public class FsmBuilderInitializer<T extends Fsm, E> {
         this.supplier = supplier;
     }
 
-    public FsmBuilder<T,E> withStates() {
+    /**
+     * Starts building states declared by names
+     *
+     * @return builder of states
+     */
+    public FsmBuilder<T,E,?> withStates() {
+        return new FsmBuilder<T,E,NoStates>(supplier);
+    }
+
+    /**
+     * Starts building states declared by constants of the enum (or by names of the constants)
+     *
+     * @param states enum class of the states
+     * @param <S>    the type of enum constants
+     * @return builder of states
+     */
+    public <S extends Enum<S>> FsmBuilder<T,E,S> withStates(Class<S> states) {
         return new FsmBuilder<>(supplier);
     }
 
+    /**
+     * No constants may be passed to the builder of states declared by names
+     */
+    private enum NoStates {
+    }
+
 }
@@ -0,0 +1,628 @@
+package me.bvn13.fsm;
+
+import me.bvn13.fsm.exceptions.AmbiguousTransitionException;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import me.bvn13.fsm.exceptions.NotInitializedException;
+import me.bvn13.fsm.exceptions.TransitionMissedException;
+import me.bvn13.fsm.exceptions.UnreachableTransitionException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * <b>Compiled definition of Final State Machine</b>
+ * </p>
+ *
+ * <p>
+ * Contains states and transitions only and never changes after being built, so it is safe to build it once
+ * and share it between threads. Every FSM instance created by the definition keeps nothing but its current state,
+ * previous state and <code>done</code> flag.
+ *
+ * <p>
+ * Each state gets a dense integer id (in order of being added) while compiling. Outgoing transitions of every state
+ * are kept in flat arrays of target ids and conditions, so that choosing the next state is array indexing only.
+ * Transitions of a state are ordered by their priorities (higher first), transitions of the same priority keep
+ * the order they were declared in. How the next state is chosen is defined by {@link ResolutionPolicy}.
+ * Transitions declared with triggers are indexed by them, so only transitions registered for the trigger of incoming
+ * event are checked. Transitions inherited by nested states (see {@link StateBuilder#withParent(String)}) are copied
+ * into the tables of the states FSM may be in, so nesting costs nothing but calling handlers of containing states.
+ *
+ * <pre>
+ *  {@code
+ *  FsmDefinition<SimpleFsm<String>, String> definition = Fsm
+ *    .<SimpleFsm<String>, String>from(SimpleFsm::new)
+ *    .withStates()
+ *      .from("init")
+ *      .withTransition()
+ *        .to("finish")
+ *      .endTransition()
+ *    .end()
+ *    .finish("finish")
+ *    .end()
+ *    .define();
+ *
+ *  SimpleFsm<String> session = definition.create();
+ *  }
+ * </pre>
+ *
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ */
+public final class FsmDefinition<T extends Fsm, E> {
+
+    /**
+     * Id of absent state
+     */
+    public static final int NO_STATE = -1;
+
+    private static final Comparator<Transition<?, ?>> BY_PRIORITY = (a, b) -> Integer.compare(b.priority, a.priority);
+
+    private final Supplier<T> supplier;
+    private final int initialState;
+    private final State<E>[] states;
+    private final Map<String, Integer> ids;
+    private final TransitionTable<T, E>[] transitions;
+    private final ResolutionPolicy resolutionPolicy;
+    private final Function<? super E, ?> triggerExtractor;
+    private final Class<? extends Enum> stateType;
+    private final Enum<?>[] constants;
+    private final int[] idsByOrdinal;
+    private final TransitionSelector<T, E>[] selectors;
+    private final boolean sharedGuards;
+    /**
+     * Ids of the states entered instead of containing ones, or <code>null</code> if states are not nested
+     */
+    private final int[] leaves;
+    /**
+     * Ids of the states containing every state, innermost first, or <code>null</code> if states are not nested
+     */
+    final int[][] ancestors;
+    final FsmInstrumentation instrumentation;
+    final int flightRecorderCapacity;
+
+    @SuppressWarnings("unchecked")
+    FsmDefinition(Supplier<T> supplier, FsmGraph<T, E> graph) {
+        this.supplier = supplier;
+        this.resolutionPolicy = graph.resolutionPolicy;
+        this.triggerExtractor = graph.triggerExtractor;
+        this.instrumentation = graph.instrumentation;
+        this.flightRecorderCapacity = graph.flightRecorderCapacity;
+        this.states = graph.states.values().toArray(new State[0]);
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < this.states.length; i++) {
+            ids.put(this.states[i].getName(), i);
+        }
+        this.ids = Collections.unmodifiableMap(ids);
+        if (graph.parents.isEmpty()) {
+            this.ancestors = null;
+            this.leaves = null;
+        } else {
+            this.ancestors = ancestors(graph.parents);
+            this.leaves = leaves(graph.parents);
+        }
+        this.initialState = graph.initialState == null ? NO_STATE : leaf(ids.get(graph.initialState.getName()));
+        this.stateType = graph.stateType;
+        if (graph.stateType == null) {
+            this.constants = null;
+            this.idsByOrdinal = null;
+        } else {
+            Enum<?>[] values = graph.stateType.getEnumConstants();
+            this.constants = new Enum[this.states.length];
+            this.idsByOrdinal = new int[values.length];
+            Arrays.fill(this.idsByOrdinal, NO_STATE);
+            for (int i = 0; i < this.states.length; i++) {
+                this.constants[i] = constant(graph.stateType, this.states[i].getName());
+                this.idsByOrdinal[this.constants[i].ordinal()] = i;
+            }
+        }
+        this.transitions = new TransitionTable[this.states.length];
+        this.sharedGuards = !graph.guards.isEmpty();
+        Map<String, Integer> guardSlots = new HashMap<>();
+        Condition<T, E>[] guards = graph.guards.values().toArray(new Condition[0]);
+        for (String name : graph.guards.keySet()) {
+            guardSlots.put(name, guardSlots.size());
+        }
+        for (int i = 0; i < this.states.length; i++) {
+            int from = i;
+            List<Transition<T, E>> ordered = inherited(graph, from);
+            if (ordered.isEmpty()) {
+                continue;
+            }
+            if (instrumentation != null) {
+                ordered.replaceAll(transition -> transition.guard == null ? counting(transition, from) : transition);
+            }
+            // shared guards are counted where they are evaluated, not when their kept results are reused
+            Condition<T, E>[] checked = instrumentation == null ? guards : counting(guards, from);
+            ordered.replaceAll(transition -> transition.guard == null ? transition
+                    : transition.withCondition(transition.guard.compile(guardSlots, checked)));
+            int[] to = new int[ordered.size()];
+            for (int k = 0; k < to.length; k++) {
+                to[k] = leaf(stateId(ordered.get(k).to, this.states[from].getName()));
+            }
+            this.transitions[from] = TransitionTable.compile(ordered, to);
+        }
+        if (graph.determinismCheck) {
+            verify();
+        }
+        if (graph.compiledDispatch) {
+            this.selectors = new TransitionSelector[this.states.length];
+            for (int i = 0; i < this.states.length; i++) {
+                this.selectors[i] = TransitionSelector.compile(this, i, this.transitions[i],
+                        resolutionPolicy == ResolutionPolicy.FIRST_MATCH);
+            }
+        } else {
+            this.selectors = null;
+        }
+        if (instrumentation != null) {
+            instrumentation.bind(this);
+        }
+    }
+
+    /**
+     * Creates new FSM instance in initial state
+     *
+     * @return FSM instance
+     */
+    public T create() {
+        T fsm = newInstance();
+        fsm.init();
+        return fsm;
+    }
+
+    /**
+     * Creates new FSM instance in custom state
+     *
+     * @param name State name
+     * @return FSM instance
+     */
+    public T startingAt(String name) {
+        T fsm = newInstance();
+        fsm.setCurrentState(name);
+        return fsm;
+    }
+
+    /**
+     * Creates new FSM instance in custom state
+     *
+     * @param state State constant
+     * @return FSM instance
+     */
+    public T startingAt(Enum<?> state) {
+        return startingAt(state.name());
+    }
+
+    /**
+     * Creates new FSM instance in saved state without calling any handler
+     *
+     * @param current  id of current state or {@link #NO_STATE}
+     * @param previous id of previous state or {@link #NO_STATE}
+     * @param done     whether FSM is done
+     * @return FSM instance
+     */
+    public T restore(int current, int previous, boolean done) {
+        if (current < NO_STATE || current >= states.length || previous < NO_STATE || previous >= states.length) {
+            throw new IllegalArgumentException(format("Unknown state id %d or %d", current, previous));
+        }
+        T fsm = newInstance();
+        fsm.restore(current, previous, done);
+        return fsm;
+    }
+
+    /**
+     * Returns initial state
+     *
+     * @return {@link State}
+     */
+    public State<E> getInitialState() {
+        return initialState == NO_STATE ? null : states[initialState];
+    }
+
+    /**
+     * Returns the state by its name
+     *
+     * @param name State name
+     * @return {@link State} or <code>null</code> if there is no such state
+     */
+    public State<E> getState(String name) {
+        Integer id = ids.get(name);
+        return id == null ? null : states[id];
+    }
+
+    /**
+     * Returns the state by its id
+     *
+     * @param id State id
+     * @return {@link State}
+     */
+    public State<E> getState(int id) {
+        return states[id];
+    }
+
+    /**
+     * Returns id of the state
+     *
+     * @param name State name
+     * @return State id or {@link #NO_STATE} if there is no such state
+     */
+    public int getStateId(String name) {
+        Integer id = ids.get(name);
+        return id == null ? NO_STATE : id;
+    }
+
+    /**
+     * Returns id of the state
+     *
+     * @param state State constant
+     * @return State id or {@link #NO_STATE} if there is no such state
+     */
+    public int getStateId(Enum<?> state) {
+        if (stateType != state.getDeclaringClass()) {
+            return NO_STATE;
+        }
+        return idsByOrdinal[state.ordinal()];
+    }
+
+    /**
+     * Returns the constant of the state, if the states were defined with constants of an enum
+     *
+     * @param id State id
+     * @return constant or <code>null</code> if the states are not enum constants
+     */
+    public Enum<?> getStateConstant(int id) {
+        return constants == null || id == NO_STATE ? null : constants[id];
+    }
+
+    /**
+     * Returns number of states, ids of states are <code>0 .. getStateCount() - 1</code>
+     *
+     * @return number of states
+     */
+    public int getStateCount() {
+        return states.length;
+    }
+
+    /**
+     * Returns the way the next state is chosen
+     *
+     * @return {@link ResolutionPolicy}
+     */
+    public ResolutionPolicy getResolutionPolicy() {
+        return resolutionPolicy;
+    }
+
+    /**
+     * Returns whether the state is proven to have no more than 1 appropriate transition for any event: it has
+     * a single transition or all its transitions belong to the same exclusive group. Checking transitions of
+     * deterministic state stops at the first appropriate one regardless of {@link ResolutionPolicy}.
+     *
+     * @param id State id
+     * @return <code>true</code> if the state is deterministic
+     */
+    public boolean isDeterministic(int id) {
+        return transitions[id] == null || transitions[id].deterministic;
+    }
+
+    /**
+     * Returns all states
+     *
+     * @return states ordered by their ids
+     */
+    public Collection<State<E>> getStates() {
+        return Collections.unmodifiableList(Arrays.asList(states));
+    }
+
+    /**
+     * Returns index of the transition between the states among transitions of the source state in order of checking
+     *
+     * @param from id of the source state
+     * @param to   id of the target state
+     * @return index of the transition or {@link #NO_STATE} if there is no such transition
+     */
+    public int getTransitionIndex(int from, int to) {
+        TransitionTable<T, E> table = transitions[from];
+        if (table != null) {
+            for (int i = 0; i < table.targets.length; i++) {
+                if (table.targets[i] == to) {
+                    return i;
+                }
+            }
+        }
+        return NO_STATE;
+    }
+
+    int getInitialStateId() {
+        return initialState;
+    }
+
+    /**
+     * Returns transitions of the state in order of checking, or <code>null</code> if there are none
+     */
+    TransitionTable<T, E> getTransitions(int id) {
+        return transitions[id];
+    }
+
+    @SuppressWarnings("unchecked")
+    T newInstance() {
+        if (supplier == null) {
+            throw new NotInitializedException("FSM definition has no instance supplier");
+        }
+        T fsm = supplier.get();
+        fsm.bind(this);
+        return fsm;
+    }
+
+    /**
+     * Chooses the next state. Allocates nothing unless an exception is thrown.
+     */
+    int nextState(T fsm, int from, E event) {
+        if (sharedGuards) {
+            fsm.resetGuards();
+        }
+        if (instrumentation == null) {
+            return selectors == null ? select(fsm, from, event) : selectors[from].select(fsm, event);
+        }
+        try {
+            return selectors == null ? select(fsm, from, event) : selectors[from].select(fsm, event);
+        } catch (RuntimeException e) {
+            instrumentation.failed(from, e);
+            throw e;
+        }
+    }
+
+    int select(T fsm, int from, E event) {
+        TransitionTable<T, E> table = transitions[from];
+        if (table == null) {
+            throw new TransitionMissedException(states[from].getName());
+        }
+        table = table.select(triggerExtractor, event);
+        int[] to = table.targets;
+        Condition<T, E>[] checks = table.conditions;
+        if (resolutionPolicy == ResolutionPolicy.FIRST_MATCH || table.deterministic) {
+            return firstMatch(fsm, from, event, to, checks);
+        }
+        int next = NO_STATE;
+        for (int i = 0; i < to.length; i++) {
+            if (checks[i] == null || checks[i].check(fsm, event)) {
+                if (next != NO_STATE) {
+                    throw ambiguousTransition(fsm, from, event, table, next, i);
+                }
+                next = to[i];
+            }
+        }
+        if (next == NO_STATE) {
+            throw new BrokenTransitionException(states[from].getName());
+        }
+        return next;
+    }
+
+    private int firstMatch(T fsm, int from, E event, int[] to, Condition<T, E>[] checks) {
+        for (int i = 0; i < to.length; i++) {
+            if (checks[i] == null || checks[i].check(fsm, event)) {
+                return to[i];
+            }
+        }
+        throw new BrokenTransitionException(states[from].getName());
+    }
+
+    private AmbiguousTransitionException ambiguousTransition(T fsm,
+                                                             int from,
+                                                             E event,
+                                                             TransitionTable<T, E> table,
+                                                             int first,
+                                                             int second) {
+        int[] to = table.targets;
+        Condition<T, E>[] checks = table.conditions;
+        List<String> nextStates = new ArrayList<>();
+        nextStates.add(states[first].getName());
+        nextStates.add(states[to[second]].getName());
+        for (int i = second + 1; i < to.length; i++) {
+            if (checks[i] == null || checks[i].check(fsm, event)) {
+                nextStates.add(states[to[i]].getName());
+            }
+        }
+        return new AmbiguousTransitionException(states[from].getName(), nextStates);
+    }
+
+    private void verify() {
+        for (int from = 0; from < states.length; from++) {
+            if (states[from].isFinish() || leaf(from) != from) {
+                continue;
+            }
+            if (transitions[from] == null) {
+                throw new TransitionMissedException(states[from].getName());
+            }
+            for (TransitionTable<T, E> table : transitions[from].selectable()) {
+                verify(from, table);
+            }
+        }
+    }
+
+    private void verify(int from, TransitionTable<T, E> table) {
+        int[] to = table.targets;
+        List<String> unconditional = new ArrayList<>();
+        for (int i = 0; i < to.length; i++) {
+            if (table.conditions[i] == null) {
+                unconditional.add(states[to[i]].getName());
+            }
+        }
+        if (unconditional.size() > 1) {
+            throw new AmbiguousTransitionException(states[from].getName(), unconditional);
+        }
+        if (unconditional.size() == 1 && to.length > 1) {
+            if (resolutionPolicy == ResolutionPolicy.STRICT) {
+                throw new AmbiguousTransitionException(format("Ambiguous transition from state %s: unconditional transition to %s is mixed with conditional ones",
+                        states[from].getName(), unconditional.get(0)));
+            }
+            if (table.conditions[to.length - 1] != null) {
+                throw new UnreachableTransitionException(states[from].getName(), unconditional.get(0));
+            }
+        }
+    }
+
+    private Transition<T, E> counting(Transition<T, E> transition, int from) {
+        return transition.condition == null ? transition : transition.withCondition(counting(transition.condition, from));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Condition<T, E>[] counting(Condition<T, E>[] guards, int from) {
+        Condition<T, E>[] counted = new Condition[guards.length];
+        for (int i = 0; i < guards.length; i++) {
+            counted[i] = counting(guards[i], from);
+        }
+        return counted;
+    }
+
+    private Condition<T, E> counting(Condition<T, E> condition, int from) {
+        FsmInstrumentation instrumentation = this.instrumentation;
+        if (instrumentation.isTimingGuards()) {
+            return (fsm, event) -> {
+                long started = System.nanoTime();
+                try {
+                    return condition.check(fsm, event);
+                } finally {
+                    instrumentation.guardEvaluated(from, System.nanoTime() - started);
+                }
+            };
+        }
+        return (fsm, event) -> {
+            instrumentation.guardEvaluated(from);
+            return condition.check(fsm, event);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Enum<?> constant(Class<? extends Enum> type, String name) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new NotInitializedException(format("State '%s' is not a constant of %s", name, type.getName()), e);
+        }
+    }
+
+    /**
+     * Returns id of the state FSM is in after entering the state: the first state nested into it, if any
+     */
+    int leaf(int id) {
+        return leaves == null || id == NO_STATE ? id : leaves[id];
+    }
+
+    /**
+     * Returns the number of states containing both states
+     */
+    int commonAncestors(int first, int second) {
+        int[] a = ancestors[first];
+        int[] b = ancestors[second];
+        int common = 0;
+        while (common < a.length && common < b.length
+                && a[a.length - 1 - common] == b[b.length - 1 - common]) {
+            common++;
+        }
+        return common;
+    }
+
+    /**
+     * Collects transitions of the state and the ones it inherits from containing states: every level in order of
+     * priorities, inner levels first, the ones to already collected states are overridden
+     */
+    private List<Transition<T, E>> inherited(FsmGraph<T, E> graph, int id) {
+        List<Transition<T, E>> collected = new ArrayList<>();
+        if (leaf(id) != id) {
+            return collected;
+        }
+        Set<String> targets = new HashSet<>();
+        int[] chain = ancestors == null ? new int[0] : ancestors[id];
+        for (int level = -1; level < chain.length; level++) {
+            String name = states[level < 0 ? id : chain[level]].getName();
+            Map<String, Transition<T, E>> declared = graph.transitions.get(name);
+            if (declared == null) {
+                continue;
+            }
+            List<Transition<T, E>> ordered = new ArrayList<>();
+            for (Transition<T, E> transition : declared.values()) {
+                stateId(transition.to, name);
+                if (targets.add(transition.to)) {
+                    ordered.add(transition);
+                }
+            }
+            ordered.sort(BY_PRIORITY);
+            collected.addAll(ordered);
+        }
+        return collected;
+    }
+
+    private int[][] ancestors(Map<String, String> parents) {
+        int[] parent = new int[states.length];
+        Arrays.fill(parent, NO_STATE);
+        for (Map.Entry<String, String> entry : parents.entrySet()) {
+            Integer child = ids.get(entry.getKey());
+            Integer id = ids.get(entry.getValue());
+            if (id == null) {
+                throw new NotInitializedException(format("Unable to find state '%s' containing state '%s'",
+                        entry.getValue(), entry.getKey()));
+            }
+            if (states[id].isFinish()) {
+                throw new IllegalArgumentException(format("Finishing state '%s' cannot contain states",
+                        entry.getValue()));
+            }
+            parent[child] = id;
+        }
+        int[][] ancestors = new int[states.length][];
+        for (int i = 0; i < states.length; i++) {
+            List<Integer> chain = new ArrayList<>();
+            for (int p = parent[i]; p != NO_STATE; p = parent[p]) {
+                if (p == i || chain.contains(p)) {
+                    throw new IllegalArgumentException(format("State '%s' is nested into itself",
+                            states[p].getName()));
+                }
+                chain.add(p);
+            }
+            ancestors[i] = chain.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return ancestors;
+    }
+
+    /**
+     * Resolves every containing state into the first state nested into it, recursively
+     */
+    private int[] leaves(Map<String, String> parents) {
+        int[] first = new int[states.length];
+        Arrays.fill(first, NO_STATE);
+        for (Map.Entry<String, String> entry : parents.entrySet()) {
+            int parent = ids.get(entry.getValue());
+            if (first[parent] == NO_STATE) {
+                first[parent] = ids.get(entry.getKey());
+            }
+        }
+        int[] leaves = new int[states.length];
+        for (int i = 0; i < states.length; i++) {
+            int leaf = i;
+            while (first[leaf] != NO_STATE) {
+                leaf = first[leaf];
+            }
+            leaves[i] = leaf;
+        }
+        return leaves;
+    }
+
+    private int stateId(String name, String from) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            throw new NotInitializedException(format("Unable to find state '%s' of transition from '%s'", name, from));
+        }
+        return id;
+    }
+
+}
@@ -0,0 +1,140 @@
+package me.bvn13.fsm;
+
+import me.bvn13.fsm.exceptions.ConditionAlreadyExistsException;
+import me.bvn13.fsm.exceptions.StateAlreadyExistsException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+
+/**
+ * Mutable set of states and transitions collected before being compiled into {@link FsmDefinition}
+ *
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ */
+class FsmGraph<T extends Fsm, E> {
+
+    State<E> initialState;
+    ResolutionPolicy resolutionPolicy = ResolutionPolicy.STRICT;
+    boolean determinismCheck;
+    Class<? extends Enum> stateType;
+    Function<? super E, ?> triggerExtractor = Object::getClass;
+    FsmInstrumentation instrumentation;
+    int flightRecorderCapacity;
+    boolean compiledDispatch;
+    final Map<String, Condition<T, E>> guards = new LinkedHashMap<>();
+    final Map<String, State<E>> states = new LinkedHashMap<>();
+    /**
+     * Containing states by names of nested ones in order of being declared
+     */
+    final Map<String, String> parents = new LinkedHashMap<>();
+    final Map<String, Map<String, Transition<T, E>>> transitions = new LinkedHashMap<>();
+    /**
+     * Definition compiled from the graph unless it has been changed since, so that instrumentation is bound once
+     * however many instances are created by the builder
+     */
+    private FsmDefinition<T, E> compiled;
+
+    void initState(State<E> state) {
+        addState(state);
+        initialState = state;
+    }
+
+    void addState(State<E> state) {
+        compiled = null;
+        if (states.containsKey(state.getName())) {
+            throw new StateAlreadyExistsException(state.getName());
+        }
+        states.put(state.getName(), state);
+    }
+
+    void addParent(String state, String parent) {
+        compiled = null;
+        if (state.equals(parent)) {
+            throw new IllegalArgumentException(format("State '%s' cannot contain itself", state));
+        }
+        parents.put(state, parent);
+    }
+
+    String addConstant(Enum<?> constant) {
+        compiled = null;
+        if (stateType == null) {
+            stateType = constant.getDeclaringClass();
+        } else if (stateType != constant.getDeclaringClass()) {
+            throw new IllegalArgumentException(format("States must be constants of %s, but %s is a constant of %s",
+                    stateType.getName(), constant.name(), constant.getDeclaringClass().getName()));
+        }
+        return constant.name();
+    }
+
+    void setResolutionPolicy(ResolutionPolicy resolutionPolicy) {
+        compiled = null;
+        this.resolutionPolicy = resolutionPolicy;
+    }
+
+    void setDeterminismCheck(boolean determinismCheck) {
+        compiled = null;
+        this.determinismCheck = determinismCheck;
+    }
+
+    void setTriggerExtractor(Function<? super E, ?> triggerExtractor) {
+        compiled = null;
+        this.triggerExtractor = triggerExtractor;
+    }
+
+    void setInstrumentation(FsmInstrumentation instrumentation) {
+        compiled = null;
+        this.instrumentation = instrumentation;
+    }
+
+    void addGuard(String name, Condition<T, E> condition) {
+        compiled = null;
+        if (guards.containsKey(name)) {
+            throw new IllegalArgumentException(format("Guard '%s' already exists", name));
+        }
+        if (guards.size() == Fsm.MAX_GUARDS) {
+            throw new IllegalArgumentException(format("No more than %d guards may be shared", Fsm.MAX_GUARDS));
+        }
+        guards.put(name, condition);
+    }
+
+    void setCompiledDispatch(boolean compiledDispatch) {
+        compiled = null;
+        this.compiledDispatch = compiledDispatch;
+    }
+
+    void setFlightRecorderCapacity(int flightRecorderCapacity) {
+        compiled = null;
+        if (flightRecorderCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + flightRecorderCapacity);
+        }
+        this.flightRecorderCapacity = flightRecorderCapacity;
+    }
+
+    void addTransition(String fromState, String toState, Condition<T, E> condition) {
+        addTransition(fromState, new Transition<>(toState, condition));
+    }
+
+    void addTransition(String fromState, Transition<T, E> transition) {
+        compiled = null;
+        if (!transitions.containsKey(fromState)) {
+            transitions.put(fromState, new LinkedHashMap<>());
+        }
+        if (transitions.get(fromState).containsKey(transition.to)) {
+            throw new ConditionAlreadyExistsException(fromState, transition.to);
+        }
+        transitions.get(fromState).put(transition.to, transition);
+    }
+
+    FsmDefinition<T, E> compile(Supplier<T> supplier) {
+        if (compiled == null) {
+            compiled = new FsmDefinition<>(supplier, this);
+        }
+        return compiled;
+    }
+
+}
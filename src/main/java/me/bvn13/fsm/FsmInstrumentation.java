@@ -0,0 +1,101 @@
+package me.bvn13.fsm;
+
+/**
+ * <p>
+ * Receives measurements of FSM instances created by a definition, see
+ * {@link FsmBuilder#withInstrumentation(FsmInstrumentation)}
+ * </p>
+ *
+ * <p>
+ * Methods are called by threads processing events, so they must be thread-safe and fast. States are identified
+ * by their ids, see {@link FsmDefinition#getState(int)}. When a definition has no instrumentation, processing
+ * costs a <code>null</code> check only.
+ */
+public interface FsmInstrumentation {
+
+    /**
+     * Is called once when the definition is built, before any other method
+     *
+     * @param definition the definition being instrumented
+     */
+    default void bind(FsmDefinition<?, ?> definition) {
+    }
+
+    /**
+     * Is called after FSM has changed into the state and its before handler has been executed
+     *
+     * @param state State id
+     * @param nanos execution time of the before handler
+     */
+    void entered(int state, long nanos);
+
+    /**
+     * Is called after the after handler of the state has been executed
+     *
+     * @param state State id
+     * @param nanos execution time of the after handler
+     */
+    void exited(int state, long nanos);
+
+    /**
+     * Is called after the processor of the state has processed an event
+     *
+     * @param state State id
+     * @param nanos execution time of the processor
+     */
+    void processed(int state, long nanos);
+
+    /**
+     * Is called after FSM has changed from one state to another
+     *
+     * @param from id of the state FSM has come from
+     * @param to   id of the state FSM has come to
+     */
+    void transition(int from, int to);
+
+    /**
+     * Is called every time a condition of a transition from the state is checked. A shared guard is reported when
+     * it is evaluated, not when its result kept for the event is reused.
+     *
+     * @param state State id
+     */
+    void guardEvaluated(int state);
+
+    /**
+     * Is called instead of {@link #guardEvaluated(int)} if {@link #isTimingGuards()}
+     *
+     * @param state State id
+     * @param nanos execution time of the condition
+     */
+    default void guardEvaluated(int state, long nanos) {
+        guardEvaluated(state);
+    }
+
+    /**
+     * Returns whether conditions must be measured, which costs 2 calls of {@link System#nanoTime()} per check
+     *
+     * @return <code>true</code> to receive {@link #guardEvaluated(int, long)}
+     */
+    default boolean isTimingGuards() {
+        return false;
+    }
+
+    /**
+     * Is called after an event has been processed in the state and FSM has changed to the next one
+     *
+     * @param from  id of the state the event has been processed in
+     * @param to    id of the state FSM has come to, equals to <code>from</code> if FSM is done
+     * @param nanos execution time of the whole step: the processor, conditions and handlers
+     */
+    default void stepped(int from, int to, long nanos) {
+    }
+
+    /**
+     * Is called when processing of an event in the state has thrown an exception
+     *
+     * @param state     State id
+     * @param exception the exception
+     */
+    void failed(int state, RuntimeException exception);
+
+}
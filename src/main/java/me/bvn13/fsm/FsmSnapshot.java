@@ -0,0 +1,220 @@
+package me.bvn13.fsm;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * <b>Binary snapshots of FSM instances</b>
+ * </p>
+ *
+ * <p>
+ * Snapshot of an instance is its current state id, previous state id and <code>done</code> flag followed by
+ * optional user payload. State ids take 1, 2 or 4 bytes depending on number of states of the definition, so
+ * an instance of a machine with less than 255 states takes 3 bytes. Restoring an instance calls neither
+ * handlers nor {@link Fsm#init()}, it just puts the instance into the saved state.
+ *
+ * <p>
+ * State ids are indices of states in order they were added, so snapshots may be restored by a definition built
+ * the same way only. Bulk snapshots carry number of states and a fingerprint of their names in that order, so
+ * restoring them by a definition with other states fails. Single snapshots carry nothing but ids.
+ *
+ * <pre>
+ *  {@code
+ *  FsmSnapshot<SimpleFsm<String>, String> snapshot = new FsmSnapshot<>(definition);
+ *  ByteBuffer buffer = ByteBuffer.allocate(snapshot.bulkSize(sessions.size()));
+ *  snapshot.writeAll(sessions, buffer);
+ *  buffer.flip();
+ *  snapshot.readAll(buffer, restored::add);
+ *  }
+ * </pre>
+ *
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ */
+public final class FsmSnapshot<T extends Fsm, E> {
+
+    private static final int MAGIC = 0x46534D53;
+    private static final int HEADER_SIZE = 16;
+    private static final byte DONE = 1;
+
+    private final FsmDefinition<T, E> definition;
+    private final SnapshotPayload<? super T> payload;
+    private final int idSize;
+    private final int fingerprint;
+
+    public FsmSnapshot(FsmDefinition<T, E> definition) {
+        this(definition, null);
+    }
+
+    /**
+     * @param definition definition of instances
+     * @param payload    writer and reader of user data, may be <code>null</code>
+     */
+    public FsmSnapshot(FsmDefinition<T, E> definition, SnapshotPayload<? super T> payload) {
+        this.definition = definition;
+        this.payload = payload;
+        int ids = definition.getStateCount() + 1;
+        this.idSize = ids <= 0xFF ? 1 : ids <= 0xFFFF ? 2 : 4;
+        int fingerprint = 1;
+        for (int i = 0; i < definition.getStateCount(); i++) {
+            fingerprint = 31 * fingerprint + definition.getState(i).getName().hashCode();
+        }
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns size of snapshot of an instance, excluding payload
+     *
+     * @return number of bytes
+     */
+    public int recordSize() {
+        return 2 * idSize + 1;
+    }
+
+    /**
+     * Returns fingerprint of names of the states in order of their ids, kept along with snapshots to check they are
+     * restored by the definition they have been written by
+     *
+     * @return hash of names of the states
+     */
+    public int fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns size of bulk snapshot of the instances, excluding payload
+     *
+     * @param instances number of instances
+     * @return number of bytes
+     */
+    public int bulkSize(int instances) {
+        return HEADER_SIZE + instances * recordSize();
+    }
+
+    /**
+     * Writes snapshot of the instance
+     *
+     * @param fsm    FSM instance
+     * @param buffer buffer to write to
+     */
+    public void write(T fsm, ByteBuffer buffer) {
+        putId(buffer, fsm.getCurrentStateId());
+        putId(buffer, fsm.getPreviousStateId());
+        buffer.put(fsm.isDone() ? DONE : 0);
+        if (payload != null) {
+            payload.write(fsm, buffer);
+        }
+    }
+
+    /**
+     * Creates an instance from the snapshot written by {@link #write(Fsm, ByteBuffer)}
+     *
+     * @param buffer buffer to read from
+     * @return FSM instance
+     */
+    public T read(ByteBuffer buffer) {
+        T fsm = definition.newInstance();
+        read(buffer, fsm);
+        return fsm;
+    }
+
+    /**
+     * Puts existing instance into the state from the snapshot written by {@link #write(Fsm, ByteBuffer)}
+     *
+     * @param buffer buffer to read from
+     * @param fsm    FSM instance created by the same definition
+     * @throws IllegalArgumentException if the snapshot refers to unknown states or has no current state
+     */
+    public void read(ByteBuffer buffer, T fsm) {
+        int current = getId(buffer);
+        int previous = getId(buffer);
+        boolean done = buffer.get() == DONE;
+        if (current == FsmDefinition.NO_STATE && !done) {
+            throw new IllegalArgumentException("No current state in snapshot of unfinished instance");
+        }
+        fsm.restore(current, previous, done);
+        if (payload != null) {
+            payload.read(fsm, buffer);
+        }
+    }
+
+    /**
+     * Writes snapshots of the instances preceded by a header
+     *
+     * @param instances FSM instances
+     * @param buffer    buffer to write to
+     */
+    public void writeAll(Collection<? extends T> instances, ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(definition.getStateCount());
+        buffer.putInt(fingerprint);
+        buffer.putInt(instances.size());
+        for (T fsm : instances) {
+            write(fsm, buffer);
+        }
+    }
+
+    /**
+     * Creates instances from the snapshots written by {@link #writeAll(Collection, ByteBuffer)} in one pass
+     *
+     * @param buffer   buffer to read from
+     * @param consumer receives restored instances in order of being written
+     * @return number of restored instances
+     */
+    public int readAll(ByteBuffer buffer, Consumer<? super T> consumer) {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Buffer does not contain FSM snapshots");
+        }
+        int states = buffer.getInt();
+        if (states != definition.getStateCount()) {
+            throw new IllegalArgumentException(format("Snapshots of FSM with %d states can not be restored by the definition with %d states",
+                    states, definition.getStateCount()));
+        }
+        if (buffer.getInt() != fingerprint) {
+            throw new IllegalArgumentException("Snapshots of FSM with other states can not be restored by the definition");
+        }
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            consumer.accept(read(buffer));
+        }
+        return count;
+    }
+
+    private void putId(ByteBuffer buffer, int id) {
+        int value = id + 1;
+        switch (idSize) {
+            case 1:
+                buffer.put((byte) value);
+                break;
+            case 2:
+                buffer.putShort((short) value);
+                break;
+            default:
+                buffer.putInt(value);
+        }
+    }
+
+    private int getId(ByteBuffer buffer) {
+        int value;
+        switch (idSize) {
+            case 1:
+                value = buffer.get() & 0xFF;
+                break;
+            case 2:
+                value = buffer.getShort() & 0xFFFF;
+                break;
+            default:
+                value = buffer.getInt();
+        }
+        int id = value - 1;
+        if (id < FsmDefinition.NO_STATE || id >= definition.getStateCount()) {
+            throw new IllegalArgumentException(format("Unknown state id %d in snapshot", id));
+        }
+        return id;
+    }
+
+}
@@ -0,0 +1,180 @@
+package me.bvn13.fsm;
+
+import me.bvn13.fsm.exceptions.NotInitializedException;
+
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * Condition of transitions expressed in terms of shared guards, see {@link FsmBuilder#withGuard(String, Condition)}
+ * </p>
+ *
+ * <p>
+ * Every shared guard is checked no more than once per event however many transitions of the state refer to it,
+ * directly or through {@link #not(Guard)}, {@link #and(Guard...)} and {@link #or(Guard...)}: further checks use
+ * the result kept by FSM instance until the next event.
+ *
+ * <pre>
+ *  {@code
+ *  .withGuard("hello", (fsm, event) -> "hello".equals(event.getCommand()))
+ *  .from("greeting")
+ *    .withTransition()
+ *      .to("hello")
+ *      .checking(Guard.named("hello"))
+ *    .endTransition()
+ *    .withTransition()
+ *      .to("greeting")
+ *      .checking(Guard.not(Guard.named("hello")))
+ *    .endTransition()
+ *  .end()
+ *  }
+ * </pre>
+ */
+public abstract class Guard {
+
+    private Guard() {
+    }
+
+    /**
+     * Refers to a shared guard
+     *
+     * @param name name of the guard
+     * @return guard
+     */
+    public static Guard named(String name) {
+        return new Named(name);
+    }
+
+    /**
+     * @param guard guard
+     * @return guard being true if the given one is false
+     */
+    public static Guard not(Guard guard) {
+        return new Not(guard);
+    }
+
+    /**
+     * @param guards guards checked in order until the first false one
+     * @return guard being true if every given one is true
+     */
+    public static Guard and(Guard... guards) {
+        return new Junction(guards, true);
+    }
+
+    /**
+     * @param guards guards checked in order until the first true one
+     * @return guard being true if any given one is true
+     */
+    public static Guard or(Guard... guards) {
+        return new Junction(guards, false);
+    }
+
+    /**
+     * Compiles the expression into condition checking shared guards through FSM instance
+     *
+     * @param slots indexes of shared guards by their names
+     */
+    abstract <T extends Fsm, E> Condition<T, E> compile(Map<String, Integer> slots, Condition<T, E>[] conditions);
+
+    private static final class Named extends Guard {
+
+        private final String name;
+
+        private Named(String name) {
+            this.name = name;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked") // instances are of raw Fsm type, the condition is of their definition
+        <T extends Fsm, E> Condition<T, E> compile(Map<String, Integer> slots, Condition<T, E>[] conditions) {
+            Integer slot = slots.get(name);
+            if (slot == null) {
+                throw new NotInitializedException(format("Unable to find guard '%s'", name));
+            }
+            int index = slot;
+            Condition<T, E> condition = conditions[index];
+            return (fsm, event) -> fsm.checkGuard(index, condition, event);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+    private static final class Not extends Guard {
+
+        private final Guard guard;
+
+        private Not(Guard guard) {
+            this.guard = guard;
+        }
+
+        @Override
+        <T extends Fsm, E> Condition<T, E> compile(Map<String, Integer> slots, Condition<T, E>[] conditions) {
+            Condition<T, E> condition = guard.compile(slots, conditions);
+            return (fsm, event) -> !condition.check(fsm, event);
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + guard + ")";
+        }
+
+    }
+
+    private static final class Junction extends Guard {
+
+        private final Guard[] guards;
+        private final boolean and;
+
+        private Junction(Guard[] guards, boolean and) {
+            if (guards.length == 0) {
+                throw new IllegalArgumentException("No guards to join");
+            }
+            this.guards = guards.clone();
+            this.and = and;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <T extends Fsm, E> Condition<T, E> compile(Map<String, Integer> slots, Condition<T, E>[] conditions) {
+            Condition<T, E>[] compiled = new Condition[guards.length];
+            for (int i = 0; i < guards.length; i++) {
+                compiled[i] = guards[i].compile(slots, conditions);
+            }
+            if (and) {
+                return (fsm, event) -> {
+                    for (Condition<T, E> condition : compiled) {
+                        if (!condition.check(fsm, event)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+            }
+            return (fsm, event) -> {
+                for (Condition<T, E> condition : compiled) {
+                    if (condition.check(fsm, event)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(and ? "and(" : "or(");
+            for (int i = 0; i < guards.length; i++) {
+                text.append(i == 0 ? "" : ", ").append(guards[i]);
+            }
+            return text.append(')').toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,31 @@
+package me.bvn13.fsm;
+
+import java.util.function.Function;
+
+/**
+ * Builder of the key check of a transition, see {@link ConditionBuilder#when(Function)}
+ *
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ * @param <S> the type of enum constants states are declared with
+ * @param <K> the type of keys
+ */
+public class KeyConditionBuilder<T extends Fsm, E, S extends Enum<S>, K> {
+
+    private final ConditionBuilder<T,E,S> conditionBuilder;
+    private final Function<? super E, ? extends K> keyExtractor;
+
+    KeyConditionBuilder(ConditionBuilder<T,E,S> conditionBuilder, Function<? super E, ? extends K> keyExtractor) {
+        this.conditionBuilder = conditionBuilder;
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * @param key the key of events the transition is taken for
+     * @return builder of the transition
+     */
+    public ConditionBuilder<T,E,S> equalsTo(K key) {
+        return conditionBuilder.checkingKey(keyExtractor, key);
+    }
+
+}
@@ -0,0 +1,20 @@
+package me.bvn13.fsm;
+
+/**
+ * Defines how FSM chooses the next state among transitions from current state
+ */
+public enum ResolutionPolicy {
+
+    /**
+     * Every condition of every transition is checked, {@link me.bvn13.fsm.exceptions.AmbiguousTransitionException}
+     * is thrown if more than 1 transition is appropriate. Default policy.
+     */
+    STRICT,
+
+    /**
+     * Transitions are checked in order of their priorities (and in order of being declared within the same priority),
+     * the first appropriate transition is taken and the rest conditions are not checked
+     */
+    FIRST_MATCH
+
+}
@@ -0,0 +1,28 @@
+package me.bvn13.fsm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes and reads user data of FSM instance along with its {@link FsmSnapshot}
+ *
+ * @param <T> the type of FSM inherited class
+ */
+public interface SnapshotPayload<T extends Fsm> {
+
+    /**
+     * Writes user data of the instance
+     *
+     * @param fsm    FSM instance
+     * @param buffer buffer to write to
+     */
+    void write(T fsm, ByteBuffer buffer);
+
+    /**
+     * Reads user data written by {@link #write(Fsm, ByteBuffer)} into restored instance
+     *
+     * @param fsm    FSM instance being restored
+     * @param buffer buffer to read from
+     */
+    void read(T fsm, ByteBuffer buffer);
+
+}
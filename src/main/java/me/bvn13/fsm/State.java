@@ -36,4 +36,32 @@ public class State<E> implements StateBehaviour<E> {
         return name;
     }
 
+    /**
+     * Is called by FSM instance right before it changes INTO this state
+     *
+     * @param fsm FSM instance being processed
+     */
+    void enter(Fsm fsm) {
+        beforeEvent();
+    }
+
+    /**
+     * Is called by FSM instance right before it changes FROM this state
+     *
+     * @param fsm FSM instance being processed
+     */
+    void exit(Fsm fsm) {
+        afterEvent();
+    }
+
+    /**
+     * Is called by FSM instance to process the event in this state
+     *
+     * @param fsm   FSM instance being processed
+     * @param event event
+     */
+    void handle(Fsm fsm, E event) {
+        process(event);
+    }
+
 }
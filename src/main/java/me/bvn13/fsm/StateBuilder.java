@@ -3,17 +3,18 @@ package me.bvn13.fsm;
 import me.bvn13.fsm.dummy.DummyHandler;
 import me.bvn13.fsm.dummy.DummyProcessor;
 
-public class StateBuilder<T extends Fsm, E> {
+public class StateBuilder<T extends Fsm, E, S extends Enum<S>> {
 
-    private final FsmBuilder<T,E> fsmBuilder;
+    private final FsmBuilder<T,E,S> fsmBuilder;
     private final String name;
     private final boolean isInitial;
     private final boolean isFinishing;
     private StateHandler<T> beforeHandler = new DummyHandler<>();
     private StateHandler<T> afterHandler = new DummyHandler<>();
     private StateProcessor<T,E> processor = new DummyProcessor<>();
+    private String parent;
 
-    StateBuilder(FsmBuilder<T,E> fsmBuilder, String name, boolean isInitial, boolean isFinishing) {
+    StateBuilder(FsmBuilder<T,E,S> fsmBuilder, String name, boolean isInitial, boolean isFinishing) {
         assert !(isInitial && isFinishing);
         this.fsmBuilder = fsmBuilder;
         this.name = name;
@@ -21,42 +22,49 @@ public class StateBuilder<T extends Fsm, E> {
         this.isFinishing = isFinishing;
     }
 
-    public FsmBuilder<T,E> end() {
-        fsmBuilder.addState(new State<E>(name, isFinishing) {
-            @Override
-            public void beforeEvent() {
-                beforeHandler.handle(fsmBuilder.getFsm());
-            }
+    public FsmBuilder<T,E,S> end() {
+        fsmBuilder.addState(new DefinedState<>(name, isFinishing, beforeHandler, afterHandler, processor), isInitial);
+        if (parent != null) {
+            fsmBuilder.addParent(name, parent);
+        }
+        return fsmBuilder;
+    }
 
-            @Override
-            public void afterEvent() {
-                afterHandler.handle(fsmBuilder.getFsm());
-            }
+    /**
+     * To nest the state into another one. The state inherits transitions of its ancestors: they are checked after
+     * its own transitions, the ones to the same state are overridden. FSM is always in a state containing no other
+     * states, transitions to a containing state lead to the first state nested into it. When FSM changes state,
+     * after handlers of the states being left are called innermost first, then before handlers of the states being
+     * entered are called outermost first; the states containing both the source and the target are kept.
+     *
+     * @param parent name of the containing state
+     * @return this builder
+     */
+    public StateBuilder<T,E,S> withParent(String parent) {
+        this.parent = parent;
+        return this;
+    }
 
-            @Override
-            public void process(E event) {
-                processor.process(fsmBuilder.getFsm(), event);
-            }
-        }, isInitial);
-        return fsmBuilder;
+    public StateBuilder<T,E,S> withParent(S parent) {
+        return withParent(fsmBuilder.addConstant(parent));
     }
 
-    public StateBuilder<T,E> withBeforeHandler(StateHandler<T> handler) {
+    public StateBuilder<T,E,S> withBeforeHandler(StateHandler<T> handler) {
         this.beforeHandler = handler;
         return this;
     }
 
-    public StateBuilder<T,E> withAfterHandler(StateHandler<T> handler) {
+    public StateBuilder<T,E,S> withAfterHandler(StateHandler<T> handler) {
         this.afterHandler = handler;
         return this;
     }
 
-    public StateBuilder<T,E> withProcessor(StateProcessor<T,E> processor) {
+    public StateBuilder<T,E,S> withProcessor(StateProcessor<T,E> processor) {
         this.processor = processor;
         return this;
     }
 
-    public ConditionBuilder<T,E> withTransition() {
+    public ConditionBuilder<T,E,S> withTransition() {
         return new ConditionBuilder<>(fsmBuilder, this, name);
     }
 
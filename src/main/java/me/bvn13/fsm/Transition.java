@@ -0,0 +1,56 @@
+package me.bvn13.fsm;
+
+import java.util.function.Function;
+
+/**
+ * Transition collected by {@link FsmGraph}
+ *
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ */
+final class Transition<T extends Fsm, E> {
+
+    final String to;
+    final Condition<T, E> condition;
+    final int priority;
+    final String exclusiveGroup;
+    final Object trigger;
+    final Guard guard;
+    /**
+     * Extractor of the key the transition is chosen by, see {@link ConditionBuilder#when(Function)}
+     */
+    final Function<? super E, ?> keyExtractor;
+    final Object key;
+
+    Transition(String to, Condition<T, E> condition) {
+        this(to, condition, 0, null, null);
+    }
+
+    Transition(String to, Condition<T, E> condition, int priority, String exclusiveGroup, Object trigger) {
+        this(to, condition, priority, exclusiveGroup, trigger, null);
+    }
+
+    Transition(String to, Condition<T, E> condition, int priority, String exclusiveGroup, Object trigger, Guard guard) {
+        this(to, condition, priority, exclusiveGroup, trigger, guard, null, null);
+    }
+
+    Transition(String to, Condition<T, E> condition, int priority, String exclusiveGroup, Object trigger, Guard guard,
+               Function<? super E, ?> keyExtractor, Object key) {
+        this.to = to;
+        this.condition = condition;
+        this.priority = priority;
+        this.exclusiveGroup = exclusiveGroup;
+        this.trigger = trigger;
+        this.guard = guard;
+        this.keyExtractor = keyExtractor;
+        this.key = key;
+    }
+
+    /**
+     * @return the same transition checking another condition
+     */
+    Transition<T, E> withCondition(Condition<T, E> condition) {
+        return new Transition<>(to, condition, priority, exclusiveGroup, trigger, null, keyExtractor, key);
+    }
+
+}
@@ -0,0 +1,144 @@
+package me.bvn13.fsm;
+
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import me.bvn13.fsm.exceptions.TransitionMissedException;
+
+/**
+ * Chooses the next state from one state, specialized by the shape of its transitions while compiling the definition,
+ * see {@link FsmBuilder#withCompiledDispatch()}. Every specialization keeps the checks it needs in final fields
+ * and skips looking up the table, the trigger and the resolution policy.
+ *
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ */
+abstract class TransitionSelector<T extends Fsm, E> {
+
+    /**
+     * @return id of the next state
+     */
+    abstract int select(T fsm, E event);
+
+    /**
+     * Compiles the selector of the state
+     *
+     * @param definition  the definition being compiled
+     * @param from        State id
+     * @param table       transitions from the state or <code>null</code>
+     * @param firstMatch  whether the first appropriate transition may be taken without checking the rest
+     */
+    static <T extends Fsm, E> TransitionSelector<T, E> compile(FsmDefinition<T, E> definition,
+                                                              int from,
+                                                              TransitionTable<T, E> table,
+                                                              boolean firstMatch) {
+        String name = definition.getState(from).getName();
+        if (table == null) {
+            return new Missed<>(name);
+        }
+        if (table.isIndexed() || !(firstMatch || table.deterministic)) {
+            return new Interpreted<>(definition, from);
+        }
+        if (table.targets.length == 1) {
+            return table.conditions[0] == null
+                    ? new Unconditional<>(table.targets[0])
+                    : new Guarded<>(name, table.targets[0], table.conditions[0]);
+        }
+        return new FirstMatch<>(name, table.targets, table.conditions);
+    }
+
+    private static final class Missed<T extends Fsm, E> extends TransitionSelector<T, E> {
+
+        private final String name;
+
+        private Missed(String name) {
+            this.name = name;
+        }
+
+        @Override
+        int select(T fsm, E event) {
+            throw new TransitionMissedException(name);
+        }
+
+    }
+
+    private static final class Unconditional<T extends Fsm, E> extends TransitionSelector<T, E> {
+
+        private final int to;
+
+        private Unconditional(int to) {
+            this.to = to;
+        }
+
+        @Override
+        int select(T fsm, E event) {
+            return to;
+        }
+
+    }
+
+    private static final class Guarded<T extends Fsm, E> extends TransitionSelector<T, E> {
+
+        private final String name;
+        private final int to;
+        private final Condition<T, E> condition;
+
+        private Guarded(String name, int to, Condition<T, E> condition) {
+            this.name = name;
+            this.to = to;
+            this.condition = condition;
+        }
+
+        @Override
+        int select(T fsm, E event) {
+            if (condition.check(fsm, event)) {
+                return to;
+            }
+            throw new BrokenTransitionException(name);
+        }
+
+    }
+
+    private static final class FirstMatch<T extends Fsm, E> extends TransitionSelector<T, E> {
+
+        private final String name;
+        private final int[] to;
+        private final Condition<T, E>[] conditions;
+
+        private FirstMatch(String name, int[] to, Condition<T, E>[] conditions) {
+            this.name = name;
+            this.to = to;
+            this.conditions = conditions;
+        }
+
+        @Override
+        int select(T fsm, E event) {
+            for (int i = 0; i < to.length; i++) {
+                if (conditions[i] == null || conditions[i].check(fsm, event)) {
+                    return to[i];
+                }
+            }
+            throw new BrokenTransitionException(name);
+        }
+
+    }
+
+    /**
+     * Triggered or strictly resolved transitions are chosen by the table
+     */
+    private static final class Interpreted<T extends Fsm, E> extends TransitionSelector<T, E> {
+
+        private final FsmDefinition<T, E> definition;
+        private final int from;
+
+        private Interpreted(FsmDefinition<T, E> definition, int from) {
+            this.definition = definition;
+            this.from = from;
+        }
+
+        @Override
+        int select(T fsm, E event) {
+            return definition.select(fsm, from, event);
+        }
+
+    }
+
+}
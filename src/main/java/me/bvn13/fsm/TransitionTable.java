@@ -0,0 +1,235 @@
+package me.bvn13.fsm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Compiled transitions from one state: flat arrays of target state ids and conditions in order of checking.
+ * <p>
+ * If some transitions are declared with triggers, the table is indexed by trigger: only transitions registered
+ * for the trigger of incoming event (and transitions without trigger) are checked.
+ * <p>
+ * Transitions checking keys of events extracted by the same extractor (see {@link ConditionBuilder#when(Function)})
+ * are indexed by keys the same way: the ones registered for the key of incoming event are taken without checking
+ * the key, the ones registered for other keys are skipped, the rest are checked as usual. If several extractors are
+ * used, the transitions of the one shared by most transitions are indexed, the others are checked.
+ *
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ */
+final class TransitionTable<T extends Fsm, E> {
+
+    /**
+     * Key no transition is registered for
+     */
+    private static final Object NO_KEY = new Object();
+
+    final int[] targets;
+    final Condition<T, E>[] conditions;
+    final boolean deterministic;
+    private final Map<Object, TransitionTable<T, E>> triggered;
+    private final TransitionTable<T, E> untriggered;
+    private final Function<? super E, ?> keyExtractor;
+    private final Map<Object, TransitionTable<T, E>> keyed;
+    private final TransitionTable<T, E> unkeyed;
+
+    private TransitionTable(int[] targets,
+                            Condition<T, E>[] conditions,
+                            boolean deterministic,
+                            Map<Object, TransitionTable<T, E>> triggered,
+                            TransitionTable<T, E> untriggered) {
+        this(targets, conditions, deterministic, triggered, untriggered, null, null, null);
+    }
+
+    private TransitionTable(int[] targets,
+                            Condition<T, E>[] conditions,
+                            boolean deterministic,
+                            Map<Object, TransitionTable<T, E>> triggered,
+                            TransitionTable<T, E> untriggered,
+                            Function<? super E, ?> keyExtractor,
+                            Map<Object, TransitionTable<T, E>> keyed,
+                            TransitionTable<T, E> unkeyed) {
+        this.targets = targets;
+        this.conditions = conditions;
+        this.deterministic = deterministic;
+        this.triggered = triggered;
+        this.untriggered = untriggered;
+        this.keyExtractor = keyExtractor;
+        this.keyed = keyed;
+        this.unkeyed = unkeyed;
+    }
+
+    /**
+     * @param transitions transitions in order of checking
+     * @param targets     ids of target states of the transitions
+     */
+    static <T extends Fsm, E> TransitionTable<T, E> compile(List<Transition<T, E>> transitions, int[] targets) {
+        Set<Object> triggers = new LinkedHashSet<>();
+        for (Transition<T, E> transition : transitions) {
+            if (transition.trigger != null) {
+                triggers.add(transition.trigger);
+            }
+        }
+        TransitionTable<T, E> all = plain(transitions, targets, transition -> true);
+        if (triggers.isEmpty()) {
+            return all;
+        }
+        Map<Object, TransitionTable<T, E>> triggered = new HashMap<>();
+        boolean deterministic = true;
+        for (Object trigger : triggers) {
+            TransitionTable<T, E> table = plain(transitions, targets,
+                    transition -> transition.trigger == null || transition.trigger.equals(trigger));
+            triggered.put(trigger, table);
+            deterministic &= table.deterministic;
+        }
+        TransitionTable<T, E> untriggered = plain(transitions, targets, transition -> transition.trigger == null);
+        deterministic &= untriggered.deterministic;
+        return new TransitionTable<>(all.targets, all.conditions, deterministic, triggered, untriggered);
+    }
+
+    /**
+     * Returns transitions to be checked for the event
+     */
+    TransitionTable<T, E> select(Function<? super E, ?> triggerExtractor, E event) {
+        if (triggered == null) {
+            return selectByKey(event);
+        }
+        TransitionTable<T, E> table = event == null ? null : triggered.get(triggerExtractor.apply(event));
+        return (table == null ? untriggered : table).selectByKey(event);
+    }
+
+    private TransitionTable<T, E> selectByKey(E event) {
+        if (keyed == null) {
+            return this;
+        }
+        TransitionTable<T, E> table = event == null ? null : keyed.get(keyExtractor.apply(event));
+        return table == null ? unkeyed : table;
+    }
+
+    /**
+     * Returns whether choosing transitions to be checked for the event needs looking up an index
+     */
+    boolean isIndexed() {
+        return triggered != null || keyed != null;
+    }
+
+    /**
+     * Returns every table which may be selected for an event by trigger, with conditions of the transitions
+     * checking keys
+     */
+    Collection<TransitionTable<T, E>> selectable() {
+        if (triggered == null) {
+            return Collections.singletonList(this);
+        }
+        List<TransitionTable<T, E>> tables = new ArrayList<>(triggered.values());
+        tables.add(untriggered);
+        return tables;
+    }
+
+    private static <T extends Fsm, E> TransitionTable<T, E> plain(List<Transition<T, E>> transitions,
+                                                                 int[] targets,
+                                                                 Predicate<Transition<T, E>> filter) {
+        List<Transition<T, E>> selected = new ArrayList<>();
+        List<Integer> to = new ArrayList<>();
+        for (int i = 0; i < transitions.size(); i++) {
+            Transition<T, E> transition = transitions.get(i);
+            if (filter.test(transition)) {
+                selected.add(transition);
+                to.add(targets[i]);
+            }
+        }
+        TransitionTable<T, E> all = keyed(selected, to, null, null);
+        Function<? super E, ?> keyExtractor = sharedKeyExtractor(selected);
+        if (keyExtractor == null) {
+            return all;
+        }
+        Map<Object, TransitionTable<T, E>> keyed = new HashMap<>();
+        for (Transition<T, E> transition : selected) {
+            if (transition.keyExtractor == keyExtractor && !keyed.containsKey(transition.key)) {
+                keyed.put(transition.key, keyed(selected, to, keyExtractor, transition.key));
+            }
+        }
+        TransitionTable<T, E> unkeyed = keyed(selected, to, keyExtractor, NO_KEY);
+        return new TransitionTable<>(all.targets, all.conditions, all.deterministic, null, null, keyExtractor, keyed,
+                unkeyed);
+    }
+
+    /**
+     * Compiles the transitions for events having the key: the ones checking the key extracted by the extractor are
+     * skipped unless it is equal to the key, then they are taken without checking
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Fsm, E> TransitionTable<T, E> keyed(List<Transition<T, E>> transitions,
+                                                                 List<Integer> targets,
+                                                                 Function<? super E, ?> keyExtractor,
+                                                                 Object key) {
+        List<Transition<T, E>> selected = new ArrayList<>();
+        List<Condition<T, E>> checks = new ArrayList<>();
+        List<Integer> to = new ArrayList<>();
+        for (int i = 0; i < transitions.size(); i++) {
+            Transition<T, E> transition = transitions.get(i);
+            if (keyExtractor == null || transition.keyExtractor != keyExtractor) {
+                checks.add(transition.condition);
+            } else if (Objects.equals(key, transition.key)) {
+                checks.add(null);
+            } else {
+                continue;
+            }
+            selected.add(transition);
+            to.add(targets.get(i));
+        }
+        int[] selectedTargets = new int[selected.size()];
+        Condition<T, E>[] conditions = checks.toArray(new Condition[0]);
+        for (int i = 0; i < selectedTargets.length; i++) {
+            selectedTargets[i] = to.get(i);
+        }
+        return new TransitionTable<>(selectedTargets, conditions, isDeterministic(selected), null, null);
+    }
+
+    /**
+     * @return the key extractor shared by most transitions or <code>null</code> if no transition checks a key
+     */
+    private static <E> Function<? super E, ?> sharedKeyExtractor(List<? extends Transition<?, E>> transitions) {
+        Map<Function<? super E, ?>, Integer> counts = new IdentityHashMap<>();
+        Function<? super E, ?> shared = null;
+        int max = 0;
+        for (Transition<?, E> transition : transitions) {
+            if (transition.keyExtractor == null) {
+                continue;
+            }
+            int count = counts.merge(transition.keyExtractor, 1, Integer::sum);
+            if (count > max) {
+                max = count;
+                shared = transition.keyExtractor;
+            }
+        }
+        return shared;
+    }
+
+    private static boolean isDeterministic(List<? extends Transition<?, ?>> transitions) {
+        if (transitions.size() <= 1) {
+            return true;
+        }
+        String group = transitions.get(0).exclusiveGroup;
+        if (group == null) {
+            return false;
+        }
+        for (Transition<?, ?> transition : transitions) {
+            if (transition.condition == null || !group.equals(transition.exclusiveGroup)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,49 @@
+package me.bvn13.fsm.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * State of {@link StateMachine}, ids of states are given in order of declaration
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+@Repeatable(FsmStates.class)
+public @interface FsmState {
+
+    /**
+     * @return State name
+     */
+    String name();
+
+    /**
+     * @return whether FSM starts in this state, there must be exactly one initial state
+     */
+    boolean initial() default false;
+
+    /**
+     * @return whether it is a finishing state
+     */
+    boolean finish() default false;
+
+    /**
+     * @return name of the method called right before FSM changes INTO this state
+     */
+    String before() default "";
+
+    /**
+     * @return name of the method called right before FSM changes FROM this state
+     */
+    String after() default "";
+
+    /**
+     * @return name of the method processing events in this state
+     */
+    String processor() default "";
+
+}
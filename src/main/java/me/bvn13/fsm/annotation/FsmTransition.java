@@ -0,0 +1,39 @@
+package me.bvn13.fsm.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Transition of {@link StateMachine}
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+@Repeatable(FsmTransitions.class)
+public @interface FsmTransition {
+
+    /**
+     * @return name of the state the transition is made from
+     */
+    String from();
+
+    /**
+     * @return name of the state the transition is made to
+     */
+    String to();
+
+    /**
+     * @return name of the method checking the condition of the transition, unconditional transition by default
+     */
+    String guard() default "";
+
+    /**
+     * @return priority of the transition, transitions with higher priority are checked first
+     */
+    int priority() default 0;
+
+}
@@ -0,0 +1,62 @@
+package me.bvn13.fsm.annotation;
+
+import me.bvn13.fsm.ResolutionPolicy;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * <b>State machine generated at compile time</b>
+ * </p>
+ *
+ * <p>
+ * Marks an abstract class extending {@link me.bvn13.fsm.Fsm} whose states and transitions are declared with
+ * {@link FsmState} and {@link FsmTransition}. The annotation processor of <code>fsm-processor</code> module
+ * generates its final subclass with the states compiled into <code>switch</code> statements calling handlers,
+ * processors and conditions of the class directly: no builder runs and nothing is looked up at runtime.
+ *
+ * <pre>
+ *  {@code
+ *  @StateMachine
+ *  @FsmState(name = "init", initial = true)
+ *  @FsmState(name = "paid", processor = "charge")
+ *  @FsmState(name = "finish", finish = true)
+ *  @FsmTransition(from = "init", to = "paid", guard = "isPayment")
+ *  @FsmTransition(from = "paid", to = "finish")
+ *  public abstract class Order extends Fsm<Order, String> {
+ *      boolean isPayment(String event) {
+ *          return event.startsWith("pay");
+ *      }
+ *      void charge(String event) {
+ *      }
+ *  }
+ *
+ *  Order order = new OrderFsm();
+ *  order.init();
+ *  }
+ * </pre>
+ *
+ * Handlers are methods with no parameters, processors and conditions are methods accepting the event
+ * (conditions return <code>boolean</code>). They must not be private.
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface StateMachine {
+
+    /**
+     * @return simple name of the generated class, the name of the annotated class followed by <code>Fsm</code>
+     * by default
+     */
+    String name() default "";
+
+    /**
+     * @return the way the next state is chosen
+     */
+    ResolutionPolicy resolutionPolicy() default ResolutionPolicy.STRICT;
+
+}
@@ -0,0 +1,171 @@
+package me.bvn13.fsm.async;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.State;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * <b>Asynchronous FSM runtime</b>
+ * </p>
+ *
+ * <p>
+ * Events submitted to the FSM instance are put into its bounded mailbox and processed later by a task run
+ * on the given {@link Executor}. The task processes up to <code>batchSize</code> events at once and reschedules
+ * itself if more events are waiting, so that one instance does not occupy an executor thread forever.
+ *
+ * <p>
+ * No more than one task is scheduled for an instance at a time: events of an instance are processed
+ * one by one in order of being submitted, and no lock is held while processing them. Different instances are
+ * processed in parallel as far as the executor allows.
+ *
+ * <pre>
+ *  {@code
+ *  AsyncFsm<SimpleFsm<String>, String> async = new AsyncFsm<>(definition.create(), executor);
+ *  async.submit("event")
+ *       .thenAccept(state -> System.out.println("Now in " + state));
+ *  }
+ * </pre>
+ *
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ */
+public class AsyncFsm<T extends Fsm, E> {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private final T fsm;
+    private final Executor executor;
+    private final int capacity;
+    private final int batchSize;
+    private final Queue<Envelope<E>> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public AsyncFsm(T fsm, Executor executor) {
+        this(fsm, executor, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param fsm       FSM instance, must not be used by anyone else
+     * @param executor  executor to process events on
+     * @param capacity  maximum number of events waiting to be processed
+     * @param batchSize maximum number of events processed by one task
+     */
+    public AsyncFsm(T fsm, Executor executor, int capacity, int batchSize) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Capacity and batch size must be positive");
+        }
+        this.fsm = fsm;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Puts the event into mailbox
+     *
+     * @param event event
+     * @return stage completed with the state FSM has come to after processing the event, or completed exceptionally
+     * with exception thrown while processing it, or with {@link RejectedExecutionException} if the mailbox is full
+     */
+    public CompletionStage<State<E>> submit(E event) {
+        CompletableFuture<State<E>> result = new CompletableFuture<>();
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            result.completeExceptionally(new RejectedExecutionException("Mailbox is full"));
+            return result;
+        }
+        mailbox.offer(new Envelope<>(event, result));
+        schedule();
+        return result;
+    }
+
+    /**
+     * Returns the FSM instance. It must not be processed directly while events are submitted to the mailbox.
+     *
+     * @return FSM instance
+     */
+    public T getFsm() {
+        return fsm;
+    }
+
+    /**
+     * Returns number of events waiting to be processed
+     *
+     * @return number of events
+     */
+    public int getPending() {
+        return size.get();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            reject(e);
+            scheduled.set(false);
+            if (!mailbox.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                Envelope<E> envelope = mailbox.poll();
+                if (envelope == null) {
+                    break;
+                }
+                size.decrementAndGet();
+                try {
+                    fsm.process(envelope.event);
+                    envelope.result.complete(fsm.getCurrentState());
+                } catch (Throwable e) {
+                    envelope.result.completeExceptionally(e);
+                    if (e instanceof Error) {
+                        throw (Error) e;
+                    }
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            if (!mailbox.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private void reject(RejectedExecutionException e) {
+        Envelope<E> envelope;
+        while ((envelope = mailbox.poll()) != null) {
+            size.decrementAndGet();
+            envelope.result.completeExceptionally(e);
+        }
+    }
+
+    private static final class Envelope<E> {
+        private final E event;
+        private final CompletableFuture<State<E>> result;
+
+        private Envelope(E event, CompletableFuture<State<E>> result) {
+            this.event = event;
+            this.result = result;
+        }
+    }
+
+}
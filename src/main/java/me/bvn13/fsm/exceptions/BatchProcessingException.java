@@ -0,0 +1,21 @@
+package me.bvn13.fsm.exceptions;
+
+/**
+ * is thrown if processing of an event of a batch has failed
+ */
+public class BatchProcessingException extends FsmException {
+
+    private final int processed;
+
+    public BatchProcessingException(int processed, RuntimeException cause) {
+        super("Processing of event #" + processed + " of the batch has failed: " + cause.getMessage(), cause);
+        this.processed = processed;
+    }
+
+    /**
+     * @return number of events of the batch processed before the failed one
+     */
+    public int getProcessed() {
+        return processed;
+    }
+}
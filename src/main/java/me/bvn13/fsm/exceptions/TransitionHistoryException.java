@@ -0,0 +1,16 @@
+package me.bvn13.fsm.exceptions;
+
+/**
+ * is attached as suppressed exception to {@link FsmException} to show the last transitions of FSM instance
+ * which have led to it, see {@link me.bvn13.fsm.FlightRecorder}
+ */
+public class TransitionHistoryException extends FsmException {
+    public TransitionHistoryException(String history) {
+        super(history);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
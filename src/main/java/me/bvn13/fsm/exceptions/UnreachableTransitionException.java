@@ -0,0 +1,12 @@
+package me.bvn13.fsm.exceptions;
+
+/**
+ * is thrown if a transition can never be taken because an unconditional transition from the same state
+ * is checked before it
+ */
+public class UnreachableTransitionException extends FsmException {
+    public UnreachableTransitionException(String from, String unconditional) {
+        super(String.format("Unreachable transitions from state %s: unconditional transition to %s is checked before them",
+                from, unconditional));
+    }
+}
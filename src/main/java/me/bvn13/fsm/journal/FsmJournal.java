@@ -0,0 +1,484 @@
+package me.bvn13.fsm.journal;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * <b>Append-only journal of transitions</b>
+ * </p>
+ *
+ * <p>
+ * Keeps records of transitions (key of the instance, from state id, to state id, <code>done</code> flag, timestamp
+ * and optional bytes of the event) in memory-mapped segment files of the directory. Appending a record is a write
+ * to memory, a record becomes durable after {@link #commit(long)}: concurrent commits are grouped, so that a single
+ * flush of the segment serves all the records appended before it. When the segment is full, it is flushed and
+ * the next one is started.
+ *
+ * <p>
+ * States of instances are rebuilt by {@link #restore(FsmDefinition, BiConsumer)} from the last record of every key
+ * without calling any handler. {@link #compact()} rewrites full segments keeping only the last record of every key.
+ *
+ * <pre>
+ *  {@code
+ *  try (FsmJournal journal = new FsmJournal(directory)) {
+ *      journal.restore(definition, sessions::put);
+ *      ...
+ *      journal.commit(journal.process(sessionId, sessions.get(sessionId), event));
+ *  }
+ *  }
+ * </pre>
+ */
+public class FsmJournal implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String COMPACTION_MARKER = "compaction";
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES + 2 * Integer.BYTES + 1 + Long.BYTES + Integer.BYTES;
+    private static final byte DONE = 1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<Long> segments = new ArrayList<>();
+    private final Object commitLock = new Object();
+    private FileChannel channel;
+    private ByteBuffer active;
+    private long activeNumber;
+    private long appended;
+    private long committed;
+    private boolean committing;
+
+    public FsmJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the journal, creates the directory if it does not exist
+     *
+     * @param directory   directory to keep segment files in
+     * @param segmentSize size of a segment file in bytes
+     * @throws IOException if the directory can not be read or segment can not be mapped
+     */
+    public FsmJournal(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        recover();
+        if (segments.isEmpty()) {
+            open(0);
+        } else {
+            long last = segments.remove(segments.size() - 1);
+            open(last);
+            active.position(end(active));
+            truncate();
+        }
+    }
+
+    /**
+     * Processes the event by the instance and appends the record of the transition
+     *
+     * @param key   key of the instance
+     * @param fsm   FSM instance
+     * @param event event
+     * @return sequence number of the record, or of the last record if the instance was done and nothing was appended
+     */
+    public <T extends Fsm, E> long process(long key, T fsm, E event) {
+        return process(key, fsm, event, null);
+    }
+
+    /**
+     * Processes the event by the instance and appends the record of the transition along with bytes of the event
+     *
+     * @param key     key of the instance
+     * @param fsm     FSM instance
+     * @param event   event
+     * @param encoder converts the event to bytes, may be <code>null</code>
+     * @return sequence number of the record, or of the last record if the instance was done and nothing was appended
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Fsm, E> long process(long key, T fsm, E event, Function<? super E, byte[]> encoder) {
+        if (fsm.isDone()) {
+            return getAppended();
+        }
+        fsm.process(event);
+        return append(key, fsm.getPreviousStateId(), fsm.getCurrentStateId(), fsm.isDone(),
+                encoder == null ? null : encoder.apply(event));
+    }
+
+    /**
+     * Appends the record of the transition
+     *
+     * @param key   key of the instance
+     * @param from  id of the state the instance has come from (its previous state)
+     * @param to    id of the state the instance has come to (its current state)
+     * @param done  whether the instance is done
+     * @param event bytes of the event, may be <code>null</code>
+     * @return sequence number of the record, pass it to {@link #commit(long)} to wait the record is durable
+     */
+    public synchronized long append(long key, int from, int to, boolean done, byte[] event) {
+        int size = RECORD_HEADER_SIZE + (event == null ? 0 : event.length);
+        if (size > segmentSize) {
+            throw new IllegalArgumentException(format("Record of %d bytes does not fit into segment of %d bytes", size, segmentSize));
+        }
+        if (active.remaining() < size) {
+            roll();
+        }
+        int start = active.position();
+        active.position(start + Integer.BYTES);
+        active.putLong(key);
+        active.putInt(from);
+        active.putInt(to);
+        active.put(done ? DONE : 0);
+        active.putLong(System.currentTimeMillis());
+        if (event == null) {
+            active.putInt(0);
+        } else {
+            active.putInt(event.length);
+            active.put(event);
+        }
+        // length is written last, so that a partially written record is never read
+        active.putInt(start, size - Integer.BYTES);
+        return ++appended;
+    }
+
+    /**
+     * Waits until the record and all records appended before it are written to disk. Records of concurrent
+     * commits are written by a single flush.
+     *
+     * @param sequence sequence number returned by {@link #append(long, int, int, boolean, byte[])}
+     * @throws IllegalArgumentException if no record with the sequence number has been appended yet
+     */
+    public void commit(long sequence) {
+        long appended = getAppended();
+        if (sequence > appended) {
+            throw new IllegalArgumentException(format("Unable to commit record %d, the last appended one is %d",
+                    sequence, appended));
+        }
+        while (true) {
+            synchronized (commitLock) {
+                while (committing && committed < sequence) {
+                    try {
+                        commitLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while committing", e);
+                    }
+                }
+                if (committed >= sequence) {
+                    return;
+                }
+                committing = true;
+            }
+            long target;
+            ByteBuffer segment;
+            synchronized (this) {
+                target = appended;
+                segment = active;
+            }
+            try {
+                ((MappedByteBuffer) segment).force();
+            } finally {
+                synchronized (commitLock) {
+                    committed = Math.max(committed, target);
+                    committing = false;
+                    commitLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all appended records to disk
+     */
+    public void commit() {
+        commit(getAppended());
+    }
+
+    /**
+     * Returns sequence number of the last appended record
+     *
+     * @return sequence number
+     */
+    public synchronized long getAppended() {
+        return appended;
+    }
+
+    /**
+     * Returns number of segment files
+     *
+     * @return number of segments
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size() + 1;
+    }
+
+    /**
+     * Passes every record to the visitor in order of being appended
+     *
+     * @param visitor receives records
+     * @throws IOException if a segment can not be read
+     */
+    public synchronized void replay(JournalVisitor visitor) throws IOException {
+        for (long number : segments) {
+            replay(map(number, FileChannel.MapMode.READ_ONLY), visitor);
+        }
+        ByteBuffer segment = active.duplicate();
+        segment.limit(segment.position());
+        segment.position(0);
+        replay(segment, visitor);
+    }
+
+    /**
+     * Creates instances in the states of the last records of their keys without calling any handler
+     *
+     * @param definition definition of instances
+     * @param consumer   receives keys and restored instances
+     * @return number of restored instances
+     * @throws IOException if a segment can not be read
+     */
+    public <T extends Fsm, E> int restore(FsmDefinition<T, E> definition, BiConsumer<Long, T> consumer) throws IOException {
+        Map<Long, Long> states = new HashMap<>();
+        replay((key, from, to, done, timestamp, event) -> states.put(key, pack(from, to, done)));
+        for (Map.Entry<Long, Long> entry : states.entrySet()) {
+            long state = entry.getValue();
+            consumer.accept(entry.getKey(), definition.restore(current(state), previous(state), (state & DONE) != 0));
+        }
+        return states.size();
+    }
+
+    /**
+     * Rewrites all segments but the one being appended keeping only the last record of every key of them
+     *
+     * @throws IOException if segments can not be rewritten
+     */
+    public synchronized void compact() throws IOException {
+        if (segments.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> last = new HashMap<>();
+        List<ByteBuffer> sealed = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            ByteBuffer segment = map(segments.get(i), FileChannel.MapMode.READ_ONLY);
+            sealed.add(segment);
+            int end = end(segment);
+            int position = 0;
+            while (position < end) {
+                last.put(segment.getLong(position + Integer.BYTES), ((long) i << 32) | position);
+                position += Integer.BYTES + segment.getInt(position);
+            }
+        }
+
+        List<Path> outputs = new ArrayList<>();
+        ByteBuffer output = ByteBuffer.allocate(segmentSize);
+        for (int i = 0; i < sealed.size(); i++) {
+            ByteBuffer segment = sealed.get(i);
+            int end = end(segment);
+            int position = 0;
+            while (position < end) {
+                int size = Integer.BYTES + segment.getInt(position);
+                if (last.get(segment.getLong(position + Integer.BYTES)) == (((long) i << 32) | position)) {
+                    if (output.remaining() < size) {
+                        outputs.add(write(output, outputs.size()));
+                    }
+                    ByteBuffer record = segment.duplicate();
+                    record.limit(position + size);
+                    record.position(position);
+                    output.put(record);
+                }
+                position += size;
+            }
+        }
+        if (output.position() > 0) {
+            outputs.add(write(output, outputs.size()));
+        }
+
+        long lastSealed = segments.get(segments.size() - 1);
+        long firstOutput = lastSealed - outputs.size() + 1;
+        Path marker = directory.resolve(COMPACTION_MARKER);
+        Path markerTemporary = directory.resolve(COMPACTION_MARKER + TEMPORARY_SUFFIX);
+        Files.write(markerTemporary, (firstOutput + " " + lastSealed).getBytes(StandardCharsets.UTF_8));
+        Files.move(markerTemporary, marker, StandardCopyOption.ATOMIC_MOVE);
+        finishCompaction(firstOutput, lastSealed);
+    }
+
+    /**
+     * Writes appended records to disk and closes the journal
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        ((MappedByteBuffer) active).force();
+        channel.close();
+    }
+
+    private void roll() {
+        ((MappedByteBuffer) active).force();
+        long sealed = activeNumber;
+        try {
+            channel.close();
+            open(sealed + 1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open journal segment " + (sealed + 1), e);
+        }
+        segments.add(sealed);
+    }
+
+    private void open(long number) throws IOException {
+        channel = FileChannel.open(segment(number), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), segmentSize);
+        active = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(size, Integer.MAX_VALUE));
+        activeNumber = number;
+    }
+
+    /**
+     * Zeroes the active segment after its last complete record: bytes of a record torn by a crash would be read
+     * as records once a shorter record is appended over its beginning
+     */
+    private void truncate() {
+        int position = active.position();
+        for (int i = position; i < active.limit(); i++) {
+            if (active.get(i) != 0) {
+                active.put(i, (byte) 0);
+            }
+        }
+        ((MappedByteBuffer) active).force();
+    }
+
+    private ByteBuffer map(long number, FileChannel.MapMode mode) throws IOException {
+        try (FileChannel segment = FileChannel.open(segment(number), StandardOpenOption.READ)) {
+            return segment.map(mode, 0, segment.size());
+        }
+    }
+
+    private Path write(ByteBuffer output, int index) throws IOException {
+        Path path = directory.resolve(index + SEGMENT_SUFFIX + TEMPORARY_SUFFIX);
+        output.flip();
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (output.hasRemaining()) {
+                file.write(output);
+            }
+            file.force(true);
+        }
+        output.clear();
+        return path;
+    }
+
+    /**
+     * Moves rewritten segments over the old ones and deletes old segments before them. Is repeated on opening
+     * if the journal was closed in the middle of compaction.
+     */
+    private void finishCompaction(long firstOutput, long lastSealed) throws IOException {
+        for (Long number : new ArrayList<>(segments)) {
+            if (number < firstOutput) {
+                Files.deleteIfExists(segment(number));
+                segments.remove(number);
+            }
+        }
+        for (long number = firstOutput; number <= lastSealed; number++) {
+            Path output = directory.resolve((number - firstOutput) + SEGMENT_SUFFIX + TEMPORARY_SUFFIX);
+            if (Files.exists(output)) {
+                Files.move(output, segment(number), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (!segments.contains(number)) {
+                segments.add(number);
+            }
+        }
+        Collections.sort(segments);
+        Files.deleteIfExists(directory.resolve(COMPACTION_MARKER));
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        Path marker = directory.resolve(COMPACTION_MARKER);
+        if (Files.exists(marker)) {
+            String[] range = new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).split(" ");
+            finishCompaction(Long.parseLong(range[0]), Long.parseLong(range[1]));
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + TEMPORARY_SUFFIX)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private Path segment(long number) {
+        return directory.resolve(format("%019d%s", number, SEGMENT_SUFFIX));
+    }
+
+    private static void replay(ByteBuffer segment, JournalVisitor visitor) {
+        ByteBuffer event = segment.duplicate();
+        int end = end(segment);
+        int position = 0;
+        while (position < end) {
+            int size = segment.getInt(position);
+            int eventStart = position + RECORD_HEADER_SIZE;
+            event.limit(eventStart + segment.getInt(eventStart - Integer.BYTES));
+            event.position(eventStart);
+            visitor.visit(segment.getLong(position + Integer.BYTES),
+                    segment.getInt(position + Integer.BYTES + Long.BYTES),
+                    segment.getInt(position + 2 * Integer.BYTES + Long.BYTES),
+                    segment.get(position + 3 * Integer.BYTES + Long.BYTES) == DONE,
+                    segment.getLong(position + 3 * Integer.BYTES + Long.BYTES + 1),
+                    event);
+            position += Integer.BYTES + size;
+        }
+    }
+
+    /**
+     * Returns position after the last record: segments are zero-filled, a record never has zero length
+     */
+    private static int end(ByteBuffer segment) {
+        int position = 0;
+        while (position + Integer.BYTES <= segment.limit()) {
+            int size = segment.getInt(position);
+            if (size <= 0 || position + Integer.BYTES + size > segment.limit()) {
+                break;
+            }
+            position += Integer.BYTES + size;
+        }
+        return position;
+    }
+
+    private static long pack(int from, int to, boolean done) {
+        return ((long) (from + 1) << 32) | ((long) (to + 1) << 1) | (done ? DONE : 0);
+    }
+
+    private static int current(long state) {
+        return (int) ((state & 0xFFFFFFFFL) >>> 1) - 1;
+    }
+
+    private static int previous(long state) {
+        return (int) (state >>> 32) - 1;
+    }
+
+}
@@ -0,0 +1,22 @@
+package me.bvn13.fsm.journal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives records of {@link FsmJournal} while replaying
+ */
+@FunctionalInterface
+public interface JournalVisitor {
+
+    /**
+     * @param key       key of the instance
+     * @param from      id of the state the instance has come from (its previous state)
+     * @param to        id of the state the instance has come to (its current state)
+     * @param done      whether the instance is done
+     * @param timestamp time of the transition, milliseconds since epoch
+     * @param event     bytes of the event between position and limit (empty if none was written), valid until
+     *                  the method returns
+     */
+    void visit(long key, int from, int to, boolean done, long timestamp, ByteBuffer event);
+
+}
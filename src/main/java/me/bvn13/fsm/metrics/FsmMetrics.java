@@ -0,0 +1,220 @@
+package me.bvn13.fsm.metrics;
+
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.FsmInstrumentation;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * <b>Metrics of FSM instances created by a definition</b>
+ * </p>
+ *
+ * <p>
+ * Counts entering and exiting every state, transitions between every pair of states, checks of conditions
+ * of transitions from every state and failures by exception class; measures execution time of before handlers,
+ * after handlers and processors of every state with {@link LatencyHistogram}. Nothing is allocated while
+ * measuring, except counters of transitions from a state (when the first transition from it happens) and
+ * counters of failures.
+ *
+ * <pre>
+ *  {@code
+ *  FsmMetrics metrics = new FsmMetrics("orders");
+ *  FsmDefinition<SimpleFsm<String>, String> definition = Fsm
+ *    .<SimpleFsm<String>, String>from(SimpleFsm::new)
+ *    .withStates()
+ *    .withInstrumentation(metrics)
+ *    ...
+ *    .define();
+ *  PrometheusExporter.serve(new InetSocketAddress(9400), metrics);
+ *  }
+ * </pre>
+ *
+ * A metrics instance may instrument a single definition only.
+ */
+public class FsmMetrics implements FsmInstrumentation {
+
+    private final String name;
+    private FsmDefinition<?, ?> definition;
+    private LongAdder[] entered;
+    private LongAdder[] exited;
+    private LongAdder[] guards;
+    private LatencyHistogram[] beforeHandlers;
+    private LatencyHistogram[] afterHandlers;
+    private LatencyHistogram[] processors;
+    private AtomicReferenceArray<AtomicLongArray> transitions;
+    private ConcurrentMap<Class<?>, LongAdder>[] failures;
+
+    /**
+     * @param name name of the machine, <code>fsm</code> label of exported metrics
+     */
+    public FsmMetrics(String name) {
+        this.name = name;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void bind(FsmDefinition<?, ?> definition) {
+        if (this.definition != null) {
+            throw new IllegalStateException(format("Metrics '%s' are already bound to another definition", name));
+        }
+        int states = definition.getStateCount();
+        this.entered = adders(states);
+        this.exited = adders(states);
+        this.guards = adders(states);
+        this.beforeHandlers = histograms(states);
+        this.afterHandlers = histograms(states);
+        this.processors = histograms(states);
+        this.transitions = new AtomicReferenceArray<>(states);
+        this.failures = new ConcurrentMap[states];
+        for (int i = 0; i < states; i++) {
+            failures[i] = new ConcurrentHashMap<>();
+        }
+        this.definition = definition;
+    }
+
+    @Override
+    public void entered(int state, long nanos) {
+        entered[state].increment();
+        beforeHandlers[state].record(nanos);
+    }
+
+    @Override
+    public void exited(int state, long nanos) {
+        exited[state].increment();
+        afterHandlers[state].record(nanos);
+    }
+
+    @Override
+    public void processed(int state, long nanos) {
+        processors[state].record(nanos);
+    }
+
+    @Override
+    public void transition(int from, int to) {
+        AtomicLongArray counts = transitions.get(from);
+        if (counts == null) {
+            transitions.compareAndSet(from, null, new AtomicLongArray(transitions.length()));
+            counts = transitions.get(from);
+        }
+        counts.incrementAndGet(to);
+    }
+
+    @Override
+    public void guardEvaluated(int state) {
+        guards[state].increment();
+    }
+
+    @Override
+    public void failed(int state, RuntimeException exception) {
+        failures[state].computeIfAbsent(exception.getClass(), type -> new LongAdder()).increment();
+    }
+
+    /**
+     * @return name of the machine
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the instrumented definition or <code>null</code> if it has not been built yet
+     */
+    public FsmDefinition<?, ?> getDefinition() {
+        return definition;
+    }
+
+    /**
+     * @param state State id
+     * @return number of times FSM has changed into the state
+     */
+    public long getEntered(int state) {
+        return entered[state].sum();
+    }
+
+    /**
+     * @param state State id
+     * @return number of times FSM has changed from the state
+     */
+    public long getExited(int state) {
+        return exited[state].sum();
+    }
+
+    /**
+     * @param from id of the state FSM has come from
+     * @param to   id of the state FSM has come to
+     * @return number of transitions
+     */
+    public long getTransitions(int from, int to) {
+        AtomicLongArray counts = transitions.get(from);
+        return counts == null ? 0 : counts.get(to);
+    }
+
+    /**
+     * @param state State id
+     * @return number of checks of conditions of transitions from the state
+     */
+    public long getGuardEvaluations(int state) {
+        return guards[state].sum();
+    }
+
+    /**
+     * @param state State id
+     * @return number of failures in the state by exception class
+     */
+    public Map<Class<?>, Long> getFailures(int state) {
+        Map<Class<?>, Long> result = new TreeMap<>((a, b) -> a.getName().compareTo(b.getName()));
+        failures[state].forEach((type, count) -> result.put(type, count.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @param state State id
+     * @return execution time of the before handler of the state
+     */
+    public LatencyHistogram getBeforeHandlerLatency(int state) {
+        return beforeHandlers[state];
+    }
+
+    /**
+     * @param state State id
+     * @return execution time of the after handler of the state
+     */
+    public LatencyHistogram getAfterHandlerLatency(int state) {
+        return afterHandlers[state];
+    }
+
+    /**
+     * @param state State id
+     * @return execution time of the processor of the state
+     */
+    public LatencyHistogram getProcessorLatency(int state) {
+        return processors[state];
+    }
+
+    private static LongAdder[] adders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static LatencyHistogram[] histograms(int size) {
+        LatencyHistogram[] histograms = new LatencyHistogram[size];
+        for (int i = 0; i < size; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+}
@@ -0,0 +1,146 @@
+package me.bvn13.fsm.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Lock-free histogram of durations in nanoseconds with logarithmic buckets
+ * </p>
+ *
+ * <p>
+ * Like HDR histograms, every power of 2 is split into 8 linear sub-buckets, so that any recorded value
+ * is known with relative error below 12.5%, from 1 nanosecond up to 2<sup>40</sup> nanoseconds (about 18 minutes,
+ * longer durations are counted in the last bucket). Recording is a few arithmetic operations and an atomic
+ * increment, it allocates nothing.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+    private static final int MAX_SHIFT = 40 - SUB_BUCKET_BITS;
+
+    /**
+     * Number of buckets
+     */
+    public static final int BUCKETS = LINEAR + MAX_SHIFT * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Records the duration
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+        sum.add(nanos);
+    }
+
+    /**
+     * Returns number of recorded durations
+     *
+     * @return number of durations
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns sum of recorded durations
+     *
+     * @return nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns number of durations counted in the bucket
+     *
+     * @param bucket bucket index, <code>0 .. BUCKETS - 1</code>
+     * @return number of durations
+     */
+    public long getCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    /**
+     * Returns numbers of durations counted in every bucket, read once, so that they are consistent with each other
+     * unlike the ones returned by {@link #getCount(int)} while durations are being recorded
+     *
+     * @return numbers of durations by bucket indexes
+     */
+    public long[] getCounts() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the duration no more than the given fraction of recorded durations exceed
+     *
+     * @param quantile fraction, e.g. <code>0.99</code>
+     * @return upper bound of the bucket in nanoseconds, <code>0</code> if nothing has been recorded
+     */
+    public long getValueAt(double quantile) {
+        long[] snapshot = getCounts();
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && seen > 0) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns index of the bucket counting the duration
+     *
+     * @param nanos duration in nanoseconds
+     * @return bucket index
+     */
+    public static int bucket(long nanos) {
+        if (nanos < LINEAR) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKETS - 1;
+        }
+        return LINEAR + (shift - 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the greatest duration counted in the bucket
+     *
+     * @param bucket bucket index
+     * @return nanoseconds
+     */
+    public static long upperBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int shift = (bucket - LINEAR) / SUB_BUCKETS + 1;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+}
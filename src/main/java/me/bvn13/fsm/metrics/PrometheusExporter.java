@@ -0,0 +1,187 @@
+package me.bvn13.fsm.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * <p>
+ * Writes {@link FsmMetrics} in Prometheus text exposition format
+ * </p>
+ *
+ * <pre>
+ *  fsm_state_entered_total{fsm="orders",state="init"} 12
+ *  fsm_transitions_total{fsm="orders",from="init",to="paid"} 10
+ *  fsm_processor_duration_seconds_bucket{fsm="orders",state="init",le="1.5E-8"} 3
+ * </pre>
+ */
+public final class PrometheusExporter {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private PrometheusExporter() {
+    }
+
+    /**
+     * Starts HTTP server exporting the metrics at <code>/metrics</code>
+     *
+     * @param address address to listen to
+     * @param metrics metrics to export
+     * @return started server, stop it when it is not needed anymore
+     * @throws IOException if the server can not be started
+     */
+    public static HttpServer serve(InetSocketAddress address, FsmMetrics... metrics) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = export(metrics).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Returns the metrics in Prometheus text format
+     *
+     * @param metrics metrics to export
+     * @return text
+     */
+    public static String export(FsmMetrics... metrics) {
+        StringWriter out = new StringWriter();
+        try {
+            write(out, metrics);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the metrics in Prometheus text format
+     *
+     * @param out     writer
+     * @param metrics metrics to export
+     * @throws IOException if writing fails
+     */
+    public static void write(Writer out, FsmMetrics... metrics) throws IOException {
+        header(out, "fsm_state_entered_total", "counter", "Number of times FSM has changed into the state");
+        for (FsmMetrics m : metrics) {
+            for (int state = 0; state < states(m); state++) {
+                sample(out, "fsm_state_entered_total", labels(m, state), m.getEntered(state));
+            }
+        }
+        header(out, "fsm_state_exited_total", "counter", "Number of times FSM has changed from the state");
+        for (FsmMetrics m : metrics) {
+            for (int state = 0; state < states(m); state++) {
+                sample(out, "fsm_state_exited_total", labels(m, state), m.getExited(state));
+            }
+        }
+        header(out, "fsm_transitions_total", "counter", "Number of transitions between the states");
+        for (FsmMetrics m : metrics) {
+            for (int from = 0; from < states(m); from++) {
+                for (int to = 0; to < states(m); to++) {
+                    long count = m.getTransitions(from, to);
+                    if (count > 0) {
+                        sample(out, "fsm_transitions_total", "fsm=\"" + escape(m.getName()) + "\",from=\"" + name(m, from)
+                                + "\",to=\"" + name(m, to) + "\"", count);
+                    }
+                }
+            }
+        }
+        header(out, "fsm_guard_evaluations_total", "counter", "Number of checks of conditions of transitions from the state");
+        for (FsmMetrics m : metrics) {
+            for (int state = 0; state < states(m); state++) {
+                sample(out, "fsm_guard_evaluations_total", labels(m, state), m.getGuardEvaluations(state));
+            }
+        }
+        header(out, "fsm_failures_total", "counter", "Number of exceptions thrown while processing events in the state");
+        for (FsmMetrics m : metrics) {
+            for (int state = 0; state < states(m); state++) {
+                for (Map.Entry<Class<?>, Long> failure : m.getFailures(state).entrySet()) {
+                    sample(out, "fsm_failures_total", labels(m, state) + ",exception=\""
+                            + escape(failure.getKey().getSimpleName()) + "\"", failure.getValue());
+                }
+            }
+        }
+        header(out, "fsm_processor_duration_seconds", "histogram", "Execution time of the processor of the state");
+        for (FsmMetrics m : metrics) {
+            for (int state = 0; state < states(m); state++) {
+                histogram(out, "fsm_processor_duration_seconds", labels(m, state), m.getProcessorLatency(state));
+            }
+        }
+        header(out, "fsm_handler_duration_seconds", "histogram", "Execution time of before and after handlers of the state");
+        for (FsmMetrics m : metrics) {
+            for (int state = 0; state < states(m); state++) {
+                histogram(out, "fsm_handler_duration_seconds", labels(m, state) + ",handler=\"before\"", m.getBeforeHandlerLatency(state));
+                histogram(out, "fsm_handler_duration_seconds", labels(m, state) + ",handler=\"after\"", m.getAfterHandlerLatency(state));
+            }
+        }
+    }
+
+    private static void header(Writer out, String metric, String type, String help) throws IOException {
+        out.write("# HELP " + metric + " " + help + "\n");
+        out.write("# TYPE " + metric + " " + type + "\n");
+    }
+
+    private static void sample(Writer out, String metric, String labels, long value) throws IOException {
+        out.write(metric + "{" + labels + "} " + value + "\n");
+    }
+
+    /**
+     * Writes cumulative buckets at powers of 2 nanoseconds, empty histograms are skipped
+     */
+    private static void histogram(Writer out, String metric, String labels, LatencyHistogram histogram) throws IOException {
+        // buckets are read once, so that the count is equal to the last cumulative bucket while recording
+        long[] counts = histogram.getCounts();
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        if (count == 0) {
+            return;
+        }
+        long cumulative = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+            cumulative += counts[bucket];
+            long bound = LatencyHistogram.upperBound(bucket) + 1;
+            if (Long.bitCount(bound) == 1 && bound >= 16) {
+                out.write(metric + "_bucket{" + labels + ",le=\"" + seconds(bound) + "\"} " + cumulative + "\n");
+            }
+        }
+        out.write(metric + "_bucket{" + labels + ",le=\"+Inf\"} " + count + "\n");
+        out.write(metric + "_sum{" + labels + "} " + seconds(histogram.getSum()) + "\n");
+        out.write(metric + "_count{" + labels + "} " + count + "\n");
+    }
+
+    private static int states(FsmMetrics metrics) {
+        return metrics.getDefinition() == null ? 0 : metrics.getDefinition().getStateCount();
+    }
+
+    private static String labels(FsmMetrics metrics, int state) {
+        return "fsm=\"" + escape(metrics.getName()) + "\",state=\"" + name(metrics, state) + "\"";
+    }
+
+    private static String name(FsmMetrics metrics, int state) {
+        return escape(metrics.getDefinition().getState(state).getName());
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
@@ -0,0 +1,306 @@
+package me.bvn13.fsm.region;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * <b>FSM of orthogonal regions</b>
+ * </p>
+ *
+ * <p>
+ * Combines independent sub-lifecycles of one entity (e.g. payment and shipping of an order) without building
+ * the cross product of their states: every region is an FSM instance of its own, the state of the whole is the tuple
+ * of the region states, and every event is processed by every region. The whole is done when every region is done.
+ *
+ * <p>
+ * Regions declared independent - their handlers, processors and conditions share nothing with other regions -
+ * may be processed in parallel on {@link ForkJoinPool}: they are forked, the rest are processed by the calling
+ * thread, then the forked ones are joined. The tuple is published after all regions have processed the event, so
+ * {@link #getCurrentStates()} and {@link #getCurrentState(String)} called by other threads never see an event
+ * processed by some regions only. Events must be processed one by one, as with a single FSM instance.
+ *
+ * <p>
+ * Handlers, processors and conditions of the regions may read states of the whole, e.g. call {@link #isDone()}:
+ * threads processing an event read the regions without locking, so they may see the event processed by some
+ * regions only. They must not process another event, {@link #process(Object)} called by them throws
+ * {@link IllegalStateException}.
+ *
+ * <pre>
+ *  {@code
+ *  Map<String, Fsm<?, OrderEvent>> regions = new LinkedHashMap<>();
+ *  regions.put("payment", payment.create());
+ *  regions.put("shipping", shipping.create());
+ *  RegionFsm<OrderEvent> order = new RegionFsm<>(regions, regions.keySet(), ForkJoinPool.commonPool());
+ *  order.process(event);
+ *  }
+ * </pre>
+ *
+ * @param <E> the type of Events
+ */
+public class RegionFsm<E> {
+
+    private final String[] names;
+    private final Fsm<?, E>[] regions;
+    private final boolean[] independent;
+    private final ForkJoinPool pool;
+    private final StampedLock lock = new StampedLock();
+    /**
+     * Threads processing the current event, they read regions without locking as the lock is not reentrant
+     */
+    private final Set<Thread> processing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Processes regions one by one in the calling thread
+     *
+     * @param regions initialized FSM instances by names of the regions, in order of processing
+     */
+    public RegionFsm(Map<String, ? extends Fsm<?, E>> regions) {
+        this(regions, Collections.emptySet(), null);
+    }
+
+    /**
+     * @param regions     initialized FSM instances by names of the regions, in order of processing; they must not be
+     *                    processed by anyone else
+     * @param independent names of the regions which may be processed in parallel with other regions
+     * @param pool        pool to process independent regions on
+     */
+    @SuppressWarnings("unchecked")
+    public RegionFsm(Map<String, ? extends Fsm<?, E>> regions, Set<String> independent, ForkJoinPool pool) {
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException("No regions");
+        }
+        for (String name : independent) {
+            if (!regions.containsKey(name)) {
+                throw new IllegalArgumentException(format("Unable to find region '%s'", name));
+            }
+        }
+        if (pool == null && !independent.isEmpty()) {
+            throw new IllegalArgumentException("Independent regions need a pool to be processed on");
+        }
+        this.names = regions.keySet().toArray(new String[0]);
+        this.regions = new Fsm[names.length];
+        this.independent = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            this.regions[i] = regions.get(names[i]);
+            this.independent[i] = independent.contains(names[i]);
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Processes the event by every region which is not done. If some regions have thrown exceptions, the one of
+     * the first region in order of processing is rethrown with the others suppressed after every region has
+     * processed the event.
+     *
+     * @param event event
+     * @throws IllegalStateException if called while processing an event, e.g. by a handler
+     */
+    public void process(E event) {
+        if (processing.contains(Thread.currentThread())) {
+            throw new IllegalStateException("Event must not be processed while processing another one");
+        }
+        long stamp = lock.writeLock();
+        processing.add(Thread.currentThread());
+        Throwable failure;
+        try {
+            failure = pool == null ? processAll(event) : processInParallel(event);
+        } finally {
+            processing.remove(Thread.currentThread());
+            lock.unlockWrite(stamp);
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    /**
+     * Returns whether every region is done
+     *
+     * @return <code>true</code> if every region is done
+     */
+    public boolean isDone() {
+        return read(() -> {
+            for (Fsm<?, E> region : regions) {
+                if (!region.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Returns current state of the region
+     *
+     * @param region name of the region
+     * @return {@link State}
+     */
+    public State<E> getCurrentState(String region) {
+        Fsm<?, E> fsm = getRegion(region);
+        return read(fsm::getCurrentState);
+    }
+
+    /**
+     * Returns current states of all regions at once
+     *
+     * @return states by names of the regions, in order of processing
+     */
+    public Map<String, State<E>> getCurrentStates() {
+        return read(() -> {
+            Map<String, State<E>> states = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                states.put(names[i], regions[i].getCurrentState());
+            }
+            return Collections.unmodifiableMap(states);
+        });
+    }
+
+    /**
+     * Returns FSM instance of the region. It must not be processed directly.
+     *
+     * @param region name of the region
+     * @return FSM instance
+     */
+    public Fsm<?, E> getRegion(String region) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(region)) {
+                return regions[i];
+            }
+        }
+        throw new IllegalArgumentException(format("Unable to find region '%s'", region));
+    }
+
+    /**
+     * Returns names of the regions
+     *
+     * @return names in order of processing
+     */
+    public List<String> getRegionNames() {
+        List<String> names = new ArrayList<>();
+        Collections.addAll(names, this.names);
+        return Collections.unmodifiableList(names);
+    }
+
+    private Throwable processAll(E event) {
+        Throwable failure = null;
+        for (Fsm<?, E> region : regions) {
+            failure = failed(failure, process(region, event));
+        }
+        return failure;
+    }
+
+    /**
+     * Forks independent regions but the last one, which is processed by the calling thread as well as the rest
+     */
+    @SuppressWarnings("unchecked")
+    private Throwable processInParallel(E event) {
+        int last = -1;
+        for (int i = 0; i < regions.length; i++) {
+            if (independent[i]) {
+                last = i;
+            }
+        }
+        ForkJoinTask<Throwable>[] forked = new ForkJoinTask[regions.length];
+        for (int i = 0; i < last; i++) {
+            if (independent[i]) {
+                Fsm<?, E> region = regions[i];
+                forked[i] = pool.submit(() -> {
+                    // joining thread may run the task itself
+                    boolean added = processing.add(Thread.currentThread());
+                    try {
+                        return process(region, event);
+                    } finally {
+                        if (added) {
+                            processing.remove(Thread.currentThread());
+                        }
+                    }
+                });
+            }
+        }
+        Throwable[] failures = new Throwable[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            if (forked[i] == null) {
+                failures[i] = process(regions[i], event);
+            }
+        }
+        // every task is joined before the lock is released
+        for (int i = 0; i < regions.length; i++) {
+            if (forked[i] != null) {
+                try {
+                    failures[i] = forked[i].join();
+                } catch (Throwable e) {
+                    failures[i] = e;
+                }
+            }
+        }
+        Throwable failure = null;
+        for (Throwable e : failures) {
+            failure = failed(failure, e);
+        }
+        return failure;
+    }
+
+    /**
+     * @return exception thrown by the region or <code>null</code>
+     */
+    private static <E> Throwable process(Fsm<?, E> region, E event) {
+        try {
+            region.process(event);
+            return null;
+        } catch (Throwable e) {
+            return e;
+        }
+    }
+
+    private static Throwable failed(Throwable failure, Throwable e) {
+        if (failure == null) {
+            return e;
+        }
+        if (e != null) {
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+
+    /**
+     * Reads region states optimistically, then under the read lock if an event has been processed meanwhile.
+     * Threads processing the event read them directly, as they already hold the write lock.
+     */
+    private <R> R read(Supplier<R> reader) {
+        if (processing.contains(Thread.currentThread())) {
+            return reader.get();
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            R result = reader.get();
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+}
@@ -0,0 +1,331 @@
+package me.bvn13.fsm.registry;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * <b>Registry of keyed FSM instances</b>
+ * </p>
+ *
+ * <p>
+ * Keeps one FSM instance per key (e.g. per customer or session id), created from the shared {@link FsmDefinition}
+ * when the first event for the key arrives. Instances are partitioned by hash of the key into shards, every shard
+ * is owned by its own worker thread: all events for a key are processed by the same thread one by one, in order
+ * of being dispatched, and no locks are taken on instances. Different shards are processed in parallel.
+ * </p>
+ *
+ * <p>
+ * Dispatching blocks while the queue of the shard is full. Handlers dispatching events from a worker thread to its
+ * own shard would wait for themselves, so such events are rejected instead when the queue is full.
+ * </p>
+ *
+ * <pre>
+ *  {@code
+ *  try (FsmRegistry<Long, SimpleFsm<String>, String> registry = new FsmRegistry<>(definition, 8)) {
+ *      registry.dispatch(customerId, "event");
+ *  }
+ *  }
+ * </pre>
+ *
+ * @param <K> the type of Keys
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ */
+public class FsmRegistry<K, T extends Fsm, E> implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    private static final int BATCH_SIZE = 256;
+
+    private final FsmDefinition<T, E> definition;
+    private final BiConsumer<K, Throwable> errorHandler;
+    private final Shard[] shards;
+    private final Envelope<K, E> stop = new Envelope<>(null, null, null, false);
+
+    /**
+     * @param definition definition to create instances from
+     * @param shards     number of shards (and worker threads)
+     */
+    public FsmRegistry(FsmDefinition<T, E> definition, int shards) {
+        this(definition, shards, DEFAULT_QUEUE_CAPACITY, Executors.defaultThreadFactory(), (key, e) -> {
+        });
+    }
+
+    /**
+     * @param definition    definition to create instances from
+     * @param shards        number of shards (and worker threads)
+     * @param queueCapacity maximum number of events waiting to be processed by a shard, dispatching blocks
+     *                      when the queue is full
+     * @param threadFactory factory of worker threads
+     * @param errorHandler  is called by worker thread if creating the instance or processing of a dispatched event
+     *                      has thrown an exception or an error
+     */
+    @SuppressWarnings("unchecked") // generic arrays can not be created, shards are only of this registry
+    public FsmRegistry(FsmDefinition<T, E> definition,
+                       int shards,
+                       int queueCapacity,
+                       ThreadFactory threadFactory,
+                       BiConsumer<K, Throwable> errorHandler) {
+        if (shards < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Number of shards and queue capacity must be positive");
+        }
+        this.definition = definition;
+        this.errorHandler = errorHandler;
+        this.shards = new FsmRegistry.Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(i, queueCapacity);
+        }
+        for (Shard shard : this.shards) {
+            Thread worker = threadFactory.newThread(shard);
+            worker.setName("fsm-registry-shard-" + shard.number);
+            shard.worker = worker;
+            worker.start();
+        }
+    }
+
+    /**
+     * Sends the event to the instance of the key, creating the instance if needed. Blocks if the queue of the shard
+     * is full.
+     *
+     * @param key   key of the instance
+     * @param event event
+     */
+    public void dispatch(K key, E event) {
+        enqueue(key, new Envelope<>(key, event, null, false));
+    }
+
+    /**
+     * Sends the event to the instance of the key, creating the instance if needed. Blocks if the queue of the shard
+     * is full.
+     *
+     * @param key   key of the instance
+     * @param event event
+     * @return stage completed with the state the instance has come to after processing the event, or completed
+     * exceptionally with exception thrown while processing it
+     */
+    public CompletionStage<State<E>> submit(K key, E event) {
+        CompletableFuture<State<E>> result = new CompletableFuture<>();
+        enqueue(key, new Envelope<>(key, event, result, false));
+        return result;
+    }
+
+    /**
+     * Forgets the instance of the key after processing events dispatched before
+     *
+     * @param key key of the instance
+     * @return stage completed with the last state of removed instance or with <code>null</code> if there was no
+     * instance for the key
+     */
+    public CompletionStage<State<E>> remove(K key) {
+        CompletableFuture<State<E>> result = new CompletableFuture<>();
+        enqueue(key, new Envelope<>(key, null, result, true));
+        return result;
+    }
+
+    /**
+     * Returns number of shards
+     *
+     * @return number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns current metrics of every shard
+     *
+     * @return metrics in order of shard numbers
+     */
+    public List<ShardMetrics> getShardMetrics() {
+        List<ShardMetrics> metrics = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            metrics.add(new ShardMetrics(shard.number, shard.instanceCount, shard.queue.size(), shard.processed, shard.failed));
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops accepting events, waits for worker threads to process already dispatched ones. If the calling thread is
+     * interrupted, returns without waiting for worker threads with the interrupt status set, workers stop anyway.
+     */
+    @Override
+    public synchronized void close() {
+        boolean interrupted = false;
+        for (Shard shard : shards) {
+            if (shard.closed) {
+                continue;
+            }
+            shard.closed = true;
+            while (true) {
+                try {
+                    shard.queue.put(stop);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        try {
+            for (Shard shard : shards) {
+                if (interrupted) {
+                    break;
+                }
+                shard.worker.join();
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(K key, Envelope<K, E> envelope) {
+        Shard shard = shards[Math.floorMod(spread(key.hashCode()), shards.length)];
+        if (shard.closed) {
+            throw new RejectedExecutionException("Registry is closed");
+        }
+        if (Thread.currentThread() == shard.worker) {
+            if (!shard.queue.offer(envelope)) {
+                throw new RejectedExecutionException(format("Queue of shard %d is full", shard.number));
+            }
+        } else {
+            try {
+                shard.queue.put(envelope);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while dispatching", e);
+            }
+        }
+        // the registry may have been closed while putting: the worker processes events enqueued before it stops,
+        // the ones still in the queue after that are taken back
+        if (shard.closed && shard.queue.remove(envelope)) {
+            throw new RejectedExecutionException("Registry is closed");
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private final class Shard implements Runnable {
+
+        private final int number;
+        private final BlockingQueue<Envelope<K, E>> queue;
+        private final Map<K, T> instances = new HashMap<>();
+        private Thread worker;
+        private volatile boolean closed;
+        private volatile int instanceCount;
+        private volatile long processed;
+        private volatile long failed;
+
+        private Shard(int number, int queueCapacity) {
+            this.number = number;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        @Override
+        public void run() {
+            List<Envelope<K, E>> batch = new ArrayList<>(BATCH_SIZE);
+            boolean stopped = false;
+            while (!stopped) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (Envelope<K, E> envelope : batch) {
+                    if (envelope == stop) {
+                        stopped = true;
+                    } else {
+                        handle(envelope);
+                    }
+                }
+                batch.clear();
+            }
+            // events enqueued by dispatchers which have passed the check before closing
+            Envelope<K, E> envelope;
+            while ((envelope = queue.poll()) != null) {
+                if (envelope != stop) {
+                    handle(envelope);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked") // instances are of raw Fsm type, events and states are of the definition
+        private void handle(Envelope<K, E> envelope) {
+            if (envelope.remove) {
+                T fsm = instances.remove(envelope.key);
+                instanceCount = instances.size();
+                envelope.result.complete(fsm == null ? null : fsm.getCurrentState());
+                return;
+            }
+            processed++;
+            try {
+                T fsm = instances.get(envelope.key);
+                if (fsm == null) {
+                    fsm = definition.create();
+                    instances.put(envelope.key, fsm);
+                    instanceCount = instances.size();
+                }
+                fsm.process(envelope.event);
+                if (envelope.result != null) {
+                    envelope.result.complete(fsm.getCurrentState());
+                }
+            } catch (Throwable e) {
+                failed++;
+                if (envelope.result != null) {
+                    envelope.result.completeExceptionally(e);
+                } else {
+                    report(envelope.key, e);
+                }
+            }
+        }
+
+        /**
+         * Failures of the error handler are swallowed so as not to stop the worker thread
+         */
+        private void report(K key, Throwable e) {
+            try {
+                errorHandler.accept(key, e);
+            } catch (Throwable ignored) {
+            }
+        }
+
+    }
+
+    private static final class Envelope<K, E> {
+
+        private final K key;
+        private final E event;
+        private final CompletableFuture<State<E>> result;
+        private final boolean remove;
+
+        private Envelope(K key, E event, CompletableFuture<State<E>> result, boolean remove) {
+            this.key = key;
+            this.event = event;
+            this.result = result;
+            this.remove = remove;
+        }
+
+    }
+
+}
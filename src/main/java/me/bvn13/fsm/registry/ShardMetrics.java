@@ -0,0 +1,63 @@
+package me.bvn13.fsm.registry;
+
+/**
+ * Metrics of a shard of {@link FsmRegistry} taken at some moment
+ */
+public final class ShardMetrics {
+
+    private final int shard;
+    private final int instances;
+    private final int pending;
+    private final long processed;
+    private final long failed;
+
+    ShardMetrics(int shard, int instances, int pending, long processed, long failed) {
+        this.shard = shard;
+        this.instances = instances;
+        this.pending = pending;
+        this.processed = processed;
+        this.failed = failed;
+    }
+
+    /**
+     * @return number of the shard
+     */
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * @return number of FSM instances owned by the shard
+     */
+    public int getInstances() {
+        return instances;
+    }
+
+    /**
+     * @return number of events waiting to be processed
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * @return number of events processed by the shard, including failed ones
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @return number of events which processing has thrown an exception
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Shard %d: instances=%d, pending=%d, processed=%d, failed=%d",
+                shard, instances, pending, processed, failed);
+    }
+
+}
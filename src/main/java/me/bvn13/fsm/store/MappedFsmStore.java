@@ -0,0 +1,255 @@
+package me.bvn13.fsm.store;
+
+import me.bvn13.fsm.FlightRecorder;
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.FsmSnapshot;
+import me.bvn13.fsm.State;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ * <b>Off-heap store of FSM instances</b>
+ * </p>
+ *
+ * <p>
+ * Keeps states of up to <code>capacity</code> instances addressed by keys <code>0 .. capacity - 1</code> in
+ * a memory-mapped file, so that heap usage does not depend on number of instances and states survive restarts
+ * without any serialization. Every instance is a fixed-width record in the format of {@link FsmSnapshot}
+ * (current state id, previous state id and flags, 3 bytes for machines of less than 255 states).
+ *
+ * <p>
+ * Processing an event loads the record into a single reusable FSM instance (flyweight), processes the event
+ * against the shared definition and writes the record back. Consequently:
+ * <ol>
+ *     <li>the FSM class must keep no data of its own besides the state: it is shared by all keys</li>
+ *     <li>the store must be used by one thread at a time</li>
+ *     <li>an instance is created in initial state on the first event for its key</li>
+ *     <li>if processing throws an exception, the record stays unchanged</li>
+ *     <li>{@link FlightRecorder} of the flyweight keeps the transitions made by the last call to the store only</li>
+ * </ol>
+ *
+ * <pre>
+ *  {@code
+ *  try (MappedFsmStore<SimpleFsm<String>, String> store = new MappedFsmStore<>(definition, path, 50_000_000L)) {
+ *      store.process(customerId, "event");
+ *  }
+ *  }
+ * </pre>
+ *
+ * @param <T> the type of FSM inherited class
+ * @param <E> the type of Events
+ */
+public class MappedFsmStore<T extends Fsm, E> implements Closeable {
+
+    private static final int MAGIC = 0x46534D32;
+    /**
+     * Magic, number of states, capacity, fingerprint of names of the states and 4 bytes to keep records aligned
+     */
+    private static final int HEADER_SIZE = 24;
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    private final FsmSnapshot<T, E> snapshot;
+    private final int recordSize;
+    private final long capacity;
+    private final int recordsPerSegment;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] segments;
+    private final FsmDefinition<T, E> definition;
+    private final T flyweight;
+
+    /**
+     * Opens the store, creates the file if it does not exist
+     *
+     * @param definition definition of instances
+     * @param file       file to keep the records in
+     * @param capacity   number of instances
+     * @throws IOException              if the file can not be mapped
+     * @throws IllegalArgumentException if the file has been created for another definition (number or names of
+     *                                  states differ) or capacity
+     */
+    public MappedFsmStore(FsmDefinition<T, E> definition, Path file, long capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.snapshot = new FsmSnapshot<>(definition);
+        this.recordSize = snapshot.recordSize();
+        this.capacity = capacity;
+        this.recordsPerSegment = SEGMENT_SIZE / recordSize;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (created) {
+                header.putInt(0, MAGIC);
+                header.putInt(4, definition.getStateCount());
+                header.putLong(8, capacity);
+                header.putInt(16, snapshot.fingerprint());
+            } else {
+                verify(definition);
+            }
+            int count = (int) ((capacity + recordsPerSegment - 1) / recordsPerSegment);
+            this.segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long records = Math.min(recordsPerSegment, capacity - (long) i * recordsPerSegment);
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_SIZE + (long) i * recordsPerSegment * recordSize, records * recordSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.definition = definition;
+        this.flyweight = definition.restore(FsmDefinition.NO_STATE, FsmDefinition.NO_STATE, false);
+    }
+
+    /**
+     * Processes the event by the instance of the key, the instance is created if there is none
+     *
+     * @param key   key of the instance
+     * @param event event
+     * @return the state the instance has come to
+     */
+    @SuppressWarnings("unchecked") // the flyweight is of raw Fsm type, events and states are of the definition
+    public State<E> process(long key, E event) {
+        T fsm = flyweight;
+        ByteBuffer segment = position(key);
+        forgetHistory();
+        if (isBlank(segment)) {
+            fsm.init();
+        } else {
+            snapshot.read(segment, fsm);
+        }
+        fsm.process(event);
+        snapshot.write(fsm, position(key));
+        return fsm.getCurrentState();
+    }
+
+    /**
+     * Loads the instance of the key into the flyweight. The flyweight is valid until the next call to the store,
+     * changes made to it are not saved.
+     *
+     * @param key key of the instance
+     * @return FSM instance, having no current state if there is no instance for the key
+     */
+    public T load(long key) {
+        ByteBuffer segment = position(key);
+        if (isBlank(segment)) {
+            return definition.restore(FsmDefinition.NO_STATE, FsmDefinition.NO_STATE, false);
+        }
+        forgetHistory();
+        snapshot.read(segment, flyweight);
+        return flyweight;
+    }
+
+    /**
+     * Returns current state of the instance of the key
+     *
+     * @param key key of the instance
+     * @return {@link State} or <code>null</code> if there is no instance for the key
+     */
+    @SuppressWarnings("unchecked") // the flyweight is of raw Fsm type, events and states are of the definition
+    public State<E> getState(long key) {
+        return isBlank(position(key)) ? null : load(key).getCurrentState();
+    }
+
+    /**
+     * Forgets the instance of the key
+     *
+     * @param key key of the instance
+     */
+    public void remove(long key) {
+        ByteBuffer segment = position(key);
+        for (int i = 0; i < recordSize; i++) {
+            segment.put((byte) 0);
+        }
+    }
+
+    /**
+     * Returns number of instances the store may keep
+     *
+     * @return capacity
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Writes changed records to the file
+     */
+    public void flush() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Flushes changes and closes the file. Mapped memory is released when the store is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private ByteBuffer position(long key) {
+        if (key < 0 || key >= capacity) {
+            throw new IndexOutOfBoundsException(format("Key %d is out of [0, %d)", key, capacity));
+        }
+        ByteBuffer segment = segments[(int) (key / recordsPerSegment)];
+        segment.position((int) (key % recordsPerSegment) * recordSize);
+        return segment;
+    }
+
+    /**
+     * Transitions recorded by the flyweight belong to the key it has been bound to before
+     */
+    private void forgetHistory() {
+        FlightRecorder recorder = flyweight.getFlightRecorder();
+        if (recorder != null) {
+            recorder.clear();
+        }
+    }
+
+    /**
+     * All-zero record is an instance having no state yet
+     */
+    private boolean isBlank(ByteBuffer segment) {
+        int position = segment.position();
+        for (int i = 0; i < recordSize; i++) {
+            if (segment.get(position + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void verify(FsmDefinition<T, E> definition) {
+        if (header.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("File is not an FSM store");
+        }
+        if (header.getInt(4) != definition.getStateCount()) {
+            throw new IllegalArgumentException(format("Store of FSM with %d states can not be opened with the definition with %d states",
+                    header.getInt(4), definition.getStateCount()));
+        }
+        if (header.getInt(16) != snapshot.fingerprint()) {
+            throw new IllegalArgumentException("Store of FSM with other states can not be opened with the definition");
+        }
+        if (header.getLong(8) != capacity) {
+            throw new IllegalArgumentException(format("Store has been created with capacity %d, not %d",
+                    header.getLong(8), capacity));
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.State;
+import me.bvn13.fsm.async.AsyncFsm;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncFsmTest {
+
+    private ExecutorService executor;
+    private FsmDefinition<SimpleFsm<String>, String> definition;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        definition = CountingDefinition.<SimpleFsm<String>>of(SimpleFsm::new).define();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void processesEventsInOrder() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        List<Integer> processed = new ArrayList<>();
+
+        // @formatter:off
+
+        SimpleFsm<Integer> fsm = Fsm
+                .<SimpleFsm<Integer>, Integer>from(SimpleFsm::new)
+                .withStates()
+                    .from("init")
+                        .withProcessor((f, event) -> {
+                            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                            processed.add(event);
+                            concurrent.decrementAndGet();
+                        })
+                        .withTransition()
+                            .to("init")
+                        .endTransition()
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        AsyncFsm<SimpleFsm<Integer>, Integer> async = new AsyncFsm<>(fsm, executor, 10_000, 16);
+        List<CompletableFuture<State<Integer>>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            results.add(async.submit(i).toCompletableFuture());
+        }
+        for (CompletableFuture<State<Integer>> result : results) {
+            Assert.assertEquals("init", result.get(5, TimeUnit.SECONDS).getName());
+        }
+
+        Assert.assertEquals(1, maxConcurrent.get());
+        Assert.assertEquals(1000, processed.size());
+        for (int i = 0; i < processed.size(); i++) {
+            Assert.assertEquals(i, processed.get(i).intValue());
+        }
+        Assert.assertEquals(0, async.getPending());
+    }
+
+    @Test
+    public void completesWithResultingState() throws Exception {
+        AsyncFsm<SimpleFsm<String>, String> async = new AsyncFsm<>(definition.create(), executor);
+
+        Assert.assertEquals("counting", async.submit("count").toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+        Assert.assertEquals("finish", async.submit("stop").toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+    }
+
+    @Test
+    public void completesExceptionallyOnFailure() throws Exception {
+        AsyncFsm<SimpleFsm<String>, String> async = new AsyncFsm<>(definition.create(), executor);
+
+        try {
+            async.submit("unknown").toCompletableFuture().get(5, TimeUnit.SECONDS);
+            Assert.fail("Broken transition is expected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof BrokenTransitionException);
+        }
+        Assert.assertEquals("finish", async.submit("stop").toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+    }
+
+    @Test
+    public void completesExceptionallyOnError() throws Exception {
+
+        // @formatter:off
+
+        SimpleFsm<String> fsm = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from("init")
+                        .withProcessor((f, event) -> {
+                            if ("error".equals(event)) {
+                                throw new AssertionError("Thrown by processor");
+                            }
+                        })
+                        .withTransition()
+                            .to("init")
+                        .endTransition()
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        AsyncFsm<SimpleFsm<String>, String> async = new AsyncFsm<>(fsm, executor);
+        try {
+            async.submit("error").toCompletableFuture().get(5, TimeUnit.SECONDS);
+            Assert.fail("Error is expected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AssertionError);
+        }
+        Assert.assertEquals("init", async.submit("event").toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+    }
+
+    @Test
+    public void rejectsWhenMailboxIsFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            single.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            AsyncFsm<SimpleFsm<String>, String> async = new AsyncFsm<>(definition.create(), single, 2, 1);
+            CompletableFuture<State<String>> first = async.submit("count").toCompletableFuture();
+            CompletableFuture<State<String>> second = async.submit("count").toCompletableFuture();
+            CompletableFuture<State<String>> third = async.submit("count").toCompletableFuture();
+
+            Assert.assertTrue(third.isCompletedExceptionally());
+            try {
+                third.get();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+
+            blocked.countDown();
+            Assert.assertEquals("counting", first.get(5, TimeUnit.SECONDS).getName());
+            Assert.assertEquals("counting", second.get(5, TimeUnit.SECONDS).getName());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.ConcurrentFsm;
+import me.bvn13.fsm.Fsm;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrentFsmTest {
+
+    @Test
+    public void handlersOfConsecutiveTransitionsAreNotSerialized() throws Exception {
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch published = new CountDownLatch(1);
+        CountDownLatch entered = new CountDownLatch(1);
+
+        // @formatter:off
+
+        ConcurrentFsm<String> concurrentFsm = Fsm
+                .<ConcurrentFsm<String>, String>from(ConcurrentFsm::new)
+                .withStates()
+                    .from("first")
+                        .withAfterHandler(fsm -> {
+                            published.countDown();
+                            await(entered);
+                            log.add("exit first");
+                        })
+                        .withTransition().to("second").endTransition()
+                    .end()
+                    .state("second")
+                        .withBeforeHandler(fsm -> log.add("enter second"))
+                        .withAfterHandler(fsm -> log.add("exit second"))
+                        .withTransition().to("third").endTransition()
+                    .end()
+                    .finish("third")
+                        .withBeforeHandler(fsm -> {
+                            log.add("enter third");
+                            entered.countDown();
+                        })
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        Thread slow = new Thread(() -> concurrentFsm.process("go"));
+        slow.start();
+        Assert.assertTrue(published.await(10, TimeUnit.SECONDS));
+        // the first transition is published, its handlers are blocked
+        Assert.assertEquals("second", concurrentFsm.getCurrentState().getName());
+        concurrentFsm.process("go");
+        slow.join(10_000);
+        Assert.assertEquals(Arrays.asList("exit second", "enter third", "exit first", "enter second"), log);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
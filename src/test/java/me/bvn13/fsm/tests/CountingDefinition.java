@@ -0,0 +1,104 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.FsmInstrumentation;
+import me.bvn13.fsm.StateBuilder;
+import me.bvn13.fsm.StateHandler;
+import me.bvn13.fsm.StateProcessor;
+
+import java.util.function.Supplier;
+
+/**
+ * Definition shared by tests: FSM stays in <code>counting</code> state on events ending with <code>count</code>
+ * and changes to <code>finish</code> one on events ending with <code>stop</code>, other events break the
+ * transition. Optionally FSM starts in <code>init</code> state changing to <code>counting</code> on any event.
+ *
+ * @param <T> the type of FSM inherited class
+ */
+final class CountingDefinition<T extends Fsm> {
+
+    private final Supplier<T> supplier;
+    private boolean init;
+    private StateHandler<T> initHandler;
+    private StateHandler<T> countingHandler;
+    private StateProcessor<T, String> processor;
+    private FsmInstrumentation instrumentation;
+
+    private CountingDefinition(Supplier<T> supplier) {
+        this.supplier = supplier;
+    }
+
+    static <T extends Fsm> CountingDefinition<T> of(Supplier<T> supplier) {
+        return new CountingDefinition<>(supplier);
+    }
+
+    CountingDefinition<T> startingInInit() {
+        this.init = true;
+        return this;
+    }
+
+    CountingDefinition<T> startingInInit(StateHandler<T> beforeHandler) {
+        this.initHandler = beforeHandler;
+        return startingInInit();
+    }
+
+    CountingDefinition<T> enteringCounting(StateHandler<T> beforeHandler) {
+        this.countingHandler = beforeHandler;
+        return this;
+    }
+
+    CountingDefinition<T> processing(StateProcessor<T, String> processor) {
+        this.processor = processor;
+        return this;
+    }
+
+    CountingDefinition<T> instrumentedBy(FsmInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+        return this;
+    }
+
+    FsmDefinition<T, String> define() {
+        FsmBuilder<T, String, ?> builder = Fsm.<T, String>from(supplier).withStates();
+        if (instrumentation != null) {
+            builder.withInstrumentation(instrumentation);
+        }
+        StateBuilder<T, String, ?> counting;
+        if (init) {
+            StateBuilder<T, String, ?> initial = builder.from("init");
+            if (initHandler != null) {
+                initial.withBeforeHandler(initHandler);
+            }
+            initial.withTransition().to("counting").endTransition().end();
+            counting = builder.state("counting");
+        } else {
+            counting = builder.from("counting");
+        }
+        if (countingHandler != null) {
+            counting.withBeforeHandler(countingHandler);
+        }
+        if (processor != null) {
+            counting.withProcessor(processor);
+        }
+
+        // @formatter:off
+
+        return counting
+                        .withTransition()
+                            .to("counting")
+                            .checking((fsm, event) -> event.endsWith("count"))
+                        .endTransition()
+                        .withTransition()
+                            .to("finish")
+                            .checking((fsm, event) -> event.endsWith("stop"))
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .define();
+
+        // @formatter:on
+    }
+
+}
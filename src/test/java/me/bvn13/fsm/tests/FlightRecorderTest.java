@@ -0,0 +1,120 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.ConcurrentFsm;
+import me.bvn13.fsm.FlightRecorder;
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import me.bvn13.fsm.exceptions.TransitionHistoryException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+public class FlightRecorderTest {
+
+    @Test
+    public void recordsLastTransitions() {
+        FsmDefinition<SimpleFsm<String>, String> definition = machine(SimpleFsm<String>::new).withFlightRecorder(3).define();
+        SimpleFsm<String> fsm = definition.create();
+        FlightRecorder recorder = fsm.getFlightRecorder();
+        Assert.assertEquals(3, recorder.getCapacity());
+        Assert.assertEquals(0, recorder.size());
+
+        fsm.process("start");
+        fsm.process("count");
+        Assert.assertEquals(2, recorder.size());
+        Assert.assertEquals(definition.getStateId("init"), recorder.getFrom(0));
+        Assert.assertEquals(definition.getStateId("counting"), recorder.getTo(0));
+        Assert.assertEquals(0, recorder.getTransitionIndex(0));
+        Assert.assertEquals(definition.getStateId("counting"), recorder.getFrom(1));
+        Assert.assertEquals(definition.getStateId("counting"), recorder.getTo(1));
+        Assert.assertTrue(recorder.getNanoTime(0) <= recorder.getNanoTime(1));
+
+        fsm.process("count");
+        fsm.process("stop");
+        Assert.assertEquals(3, recorder.size());
+        Assert.assertEquals(4, recorder.getRecorded());
+        Assert.assertEquals(definition.getStateId("counting"), recorder.getFrom(0));
+        Assert.assertEquals(definition.getStateId("finish"), recorder.getTo(2));
+        Assert.assertEquals(1, recorder.getTransitionIndex(2));
+
+        recorder.clear();
+        Assert.assertEquals(0, recorder.size());
+    }
+
+    @Test
+    public void attachesHistoryToException() {
+        SimpleFsm<String> fsm = machine(SimpleFsm<String>::new).withFlightRecorder(8).create();
+        fsm.process("start");
+        fsm.process("count");
+        try {
+            fsm.process("unknown");
+            Assert.fail("Exception expected");
+        } catch (BrokenTransitionException e) {
+            Assert.assertEquals(1, e.getSuppressed().length);
+            Assert.assertTrue(e.getSuppressed()[0] instanceof TransitionHistoryException);
+            String history = e.getSuppressed()[0].getMessage();
+            Assert.assertTrue(history, history.startsWith("Last 2 of 2 transitions:"));
+            Assert.assertTrue(history, history.contains("init -> counting (transition #0)"));
+            Assert.assertTrue(history, history.contains("counting -> counting (transition #0)"));
+        }
+    }
+
+    @Test
+    public void recordsConcurrentFsm() {
+        ConcurrentFsm<String> fsm = machine(ConcurrentFsm<String>::new).withFlightRecorder(8).create();
+        fsm.process("start");
+        try {
+            fsm.process("unknown");
+            Assert.fail("Exception expected");
+        } catch (BrokenTransitionException e) {
+            Assert.assertEquals(1, fsm.getFlightRecorder().size());
+            Assert.assertEquals(1, e.getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void isDisabledByDefault() {
+        SimpleFsm<String> fsm = machine(SimpleFsm<String>::new).create();
+        Assert.assertNull(fsm.getFlightRecorder());
+        fsm.process("start");
+        try {
+            fsm.process("unknown");
+            Assert.fail("Exception expected");
+        } catch (BrokenTransitionException e) {
+            Assert.assertEquals(0, e.getSuppressed().length);
+        }
+    }
+
+    private static <T extends Fsm> FsmBuilder<T, String, ?> machine(Supplier<T> supplier) {
+
+        // @formatter:off
+
+        return Fsm
+                .<T, String>from(supplier)
+                .withStates()
+                    .from("init")
+                        .withTransition()
+                            .to("counting")
+                        .endTransition()
+                    .end()
+                    .state("counting")
+                        .withTransition()
+                            .to("counting")
+                            .checking((fsm, event) -> "count".equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to("finish")
+                            .checking((fsm, event) -> "stop".equals(event))
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end();
+
+        // @formatter:on
+    }
+
+}
@@ -0,0 +1,232 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.journal.FsmJournal;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+public class FsmJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger handled = new AtomicInteger();
+    private FsmDefinition<SimpleFsm<String>, String> definition;
+    private Path directory;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot().toPath().resolve("journal");
+
+        // @formatter:off
+
+        definition = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from("init")
+                        .withBeforeHandler(fsm -> handled.incrementAndGet())
+                        .withTransition()
+                            .to("counting")
+                        .endTransition()
+                    .end()
+                    .state("counting")
+                        .withBeforeHandler(fsm -> handled.incrementAndGet())
+                        .withTransition()
+                            .to("counting")
+                            .checking((fsm, event) -> "count".equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to("finish")
+                            .checking((fsm, event) -> "stop".equals(event))
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .define();
+
+        // @formatter:on
+    }
+
+    @Test
+    public void replaysTransitions() throws Exception {
+        try (FsmJournal journal = new FsmJournal(directory)) {
+            SimpleFsm<String> fsm = definition.create();
+            journal.process(1, fsm, "start", event -> event.getBytes(StandardCharsets.UTF_8));
+            journal.commit(journal.process(1, fsm, "stop", event -> event.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        List<String> records = new ArrayList<>();
+        try (FsmJournal journal = new FsmJournal(directory)) {
+            journal.replay((key, from, to, done, timestamp, event) -> {
+                byte[] bytes = new byte[event.remaining()];
+                event.get(bytes);
+                records.add(key + ":" + definition.getState(from) + "->" + definition.getState(to) + ":" + done
+                        + ":" + new String(bytes, StandardCharsets.UTF_8));
+                Assert.assertTrue(timestamp > 0);
+            });
+        }
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("1:init->counting:false:start", records.get(0));
+        Assert.assertEquals("1:counting->finish:false:stop", records.get(1));
+    }
+
+    @Test
+    public void restoresLastStates() throws Exception {
+        try (FsmJournal journal = new FsmJournal(directory, 256)) {
+            for (long key = 0; key < 100; key++) {
+                SimpleFsm<String> fsm = definition.create();
+                journal.process(key, fsm, "start");
+                for (int i = 0; i < key % 3; i++) {
+                    journal.process(key, fsm, "count");
+                }
+                if (key % 10 == 0) {
+                    journal.process(key, fsm, "stop");
+                    journal.process(key, fsm, "done");
+                }
+            }
+            journal.commit();
+            Assert.assertTrue(journal.getSegmentCount() > 1);
+        }
+
+        handled.set(0);
+        Map<Long, SimpleFsm<String>> restored = new HashMap<>();
+        try (FsmJournal journal = new FsmJournal(directory, 256)) {
+            Assert.assertEquals(100, journal.restore(definition, restored::put));
+        }
+        Assert.assertEquals(0, handled.get());
+        Assert.assertEquals("finish", restored.get(10L).getCurrentState().getName());
+        Assert.assertEquals("counting", restored.get(10L).getPreviousState().getName());
+        Assert.assertTrue(restored.get(10L).isDone());
+        Assert.assertEquals("counting", restored.get(4L).getCurrentState().getName());
+        Assert.assertEquals("counting", restored.get(4L).getPreviousState().getName());
+        Assert.assertEquals("init", restored.get(3L).getPreviousState().getName());
+        Assert.assertFalse(restored.get(3L).isDone());
+    }
+
+    @Test
+    public void compactsToLastStates() throws Exception {
+        Map<Long, String> expected = new HashMap<>();
+        try (FsmJournal journal = new FsmJournal(directory, 512)) {
+            List<SimpleFsm<String>> instances = new ArrayList<>();
+            for (long key = 0; key < 10; key++) {
+                instances.add(definition.create());
+            }
+            for (int round = 0; round < 50; round++) {
+                for (int key = 0; key < 10; key++) {
+                    journal.process(key, instances.get(key), round == 0 ? "start" : key == round ? "stop" : "count");
+                }
+            }
+            for (int key = 0; key < 10; key++) {
+                expected.put((long) key, instances.get(key).getCurrentState().getName());
+            }
+            int segments = journal.getSegmentCount();
+            journal.compact();
+            Assert.assertTrue(journal.getSegmentCount() < segments);
+
+            journal.process(0, instances.get(0), "stop");
+            expected.put(0L, "finish");
+        }
+
+        Map<String, String> records = new HashMap<>();
+        Map<Long, String> restored = new HashMap<>();
+        try (FsmJournal journal = new FsmJournal(directory, 512)) {
+            AtomicInteger count = new AtomicInteger();
+            journal.replay((key, from, to, done, timestamp, event) -> count.incrementAndGet());
+            // last records of 10 keys plus records of the segment being appended, which is not compacted
+            Assert.assertTrue(count.get() < 30);
+            journal.restore(definition, (key, fsm) -> restored.put(key, fsm.getCurrentState().getName()));
+        }
+        Assert.assertEquals(expected, restored);
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertTrue(files.allMatch(file -> file.toString().endsWith(".segment")));
+        }
+    }
+
+    @Test
+    public void groupsConcurrentCommits() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (FsmJournal journal = new FsmJournal(directory)) {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                final long key = thread;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        journal.commit(journal.append(key, 0, 1, false, null));
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+            Assert.assertEquals(800, journal.getAppended());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectsCommitOfRecordNotAppended() throws Exception {
+        try (FsmJournal journal = new FsmJournal(directory)) {
+            long sequence = journal.append(1, 0, 1, false, null);
+            try {
+                journal.commit(sequence + 1);
+                Assert.fail("Commit of a record not appended must fail");
+            } catch (IllegalArgumentException e) {
+                Assert.assertEquals("Unable to commit record 2, the last appended one is 1", e.getMessage());
+            }
+            journal.commit(sequence);
+        }
+    }
+
+    @Test
+    public void forgetsTornRecord() throws Exception {
+        // a complete record of key 99 hidden in the event of the torn one, right where a short record ends
+        ByteBuffer hidden = ByteBuffer.allocate(33);
+        hidden.putInt(29).putLong(99).putInt(0).putInt(0).put((byte) 0).putLong(System.currentTimeMillis()).putInt(0);
+        try (FsmJournal journal = new FsmJournal(directory)) {
+            journal.append(1, 0, 1, false, null);
+            journal.commit(journal.append(3, 0, 1, false, hidden.array()));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".segment")).findFirst().get();
+        }
+        // the crash has happened before the length of the second record was written
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES), 33);
+        }
+
+        try (FsmJournal journal = new FsmJournal(directory)) {
+            journal.commit(journal.append(2, 0, 1, false, null));
+        }
+        List<Long> keys = new ArrayList<>();
+        try (FsmJournal journal = new FsmJournal(directory)) {
+            journal.replay((key, from, to, done, timestamp, event) -> keys.add(key));
+        }
+        Assert.assertEquals(Arrays.asList(1L, 2L), keys);
+    }
+
+}
@@ -0,0 +1,216 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.FsmInstrumentation;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import me.bvn13.fsm.metrics.FsmMetrics;
+import me.bvn13.fsm.metrics.LatencyHistogram;
+import me.bvn13.fsm.metrics.PrometheusExporter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FsmMetricsTest {
+
+    private FsmMetrics metrics;
+    private FsmDefinition<SimpleFsm<String>, String> definition;
+
+    @Before
+    public void setUp() {
+        metrics = new FsmMetrics("counter");
+        definition = CountingDefinition.<SimpleFsm<String>>of(SimpleFsm::new)
+                .instrumentedBy(metrics)
+                .startingInInit()
+                .define();
+    }
+
+    @Test
+    public void countsStatesTransitionsAndGuards() {
+        SimpleFsm<String> fsm = definition.create();
+        fsm.processAll(Arrays.asList("start", "count", "count", "stop", "done"));
+
+        int init = definition.getStateId("init");
+        int counting = definition.getStateId("counting");
+        int finish = definition.getStateId("finish");
+        Assert.assertEquals(1, metrics.getEntered(init));
+        Assert.assertEquals(1, metrics.getExited(init));
+        Assert.assertEquals(3, metrics.getEntered(counting));
+        Assert.assertEquals(3, metrics.getExited(counting));
+        Assert.assertEquals(1, metrics.getEntered(finish));
+        Assert.assertEquals(1, metrics.getExited(finish));
+        Assert.assertEquals(1, metrics.getTransitions(init, counting));
+        Assert.assertEquals(2, metrics.getTransitions(counting, counting));
+        Assert.assertEquals(1, metrics.getTransitions(counting, finish));
+        Assert.assertEquals(0, metrics.getTransitions(init, finish));
+        // 2 conditions are checked for every event in strict mode
+        Assert.assertEquals(6, metrics.getGuardEvaluations(counting));
+        Assert.assertEquals(0, metrics.getGuardEvaluations(init));
+        Assert.assertEquals(3, metrics.getProcessorLatency(counting).getCount());
+        Assert.assertEquals(1, metrics.getProcessorLatency(finish).getCount());
+    }
+
+    @Test
+    public void countsFailures() {
+        SimpleFsm<String> fsm = definition.create();
+        fsm.process("start");
+        for (int i = 0; i < 2; i++) {
+            try {
+                fsm.process("unknown");
+                Assert.fail("Broken transition is expected");
+            } catch (BrokenTransitionException ignored) {
+            }
+        }
+        Assert.assertEquals(Long.valueOf(2),
+                metrics.getFailures(definition.getStateId("counting")).get(BrokenTransitionException.class));
+    }
+
+    @Test
+    public void exportsPrometheusText() {
+        SimpleFsm<String> fsm = definition.create();
+        fsm.process("start");
+        fsm.process("count");
+
+        String text = PrometheusExporter.export(metrics);
+        Assert.assertTrue(text.contains("# TYPE fsm_transitions_total counter\n"));
+        Assert.assertTrue(text.contains("fsm_state_entered_total{fsm=\"counter\",state=\"counting\"} 2\n"));
+        Assert.assertTrue(text.contains("fsm_transitions_total{fsm=\"counter\",from=\"init\",to=\"counting\"} 1\n"));
+        Assert.assertTrue(text.contains("fsm_processor_duration_seconds_bucket{fsm=\"counter\",state=\"counting\",le=\"+Inf\"} 1\n"));
+        Assert.assertTrue(text.contains("fsm_processor_duration_seconds_count{fsm=\"counter\",state=\"init\"} 1\n"));
+    }
+
+    @Test
+    public void createsInstancesFromOneBuilder() {
+        FsmMetrics shared = new FsmMetrics("shared");
+
+        // @formatter:off
+
+        FsmBuilder<SimpleFsm<String>, String, ?> builder = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withInstrumentation(shared)
+                    .from("init")
+                        .withTransition()
+                            .to("init")
+                        .endTransition()
+                    .end();
+
+        // @formatter:on
+
+        builder.create().process("first");
+        builder.create().process("second");
+        Assert.assertSame(builder.define(), builder.define());
+        Assert.assertEquals(2, shared.getTransitions(0, 0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void bindsToSingleDefinition() {
+
+        // @formatter:off
+
+        Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withInstrumentation(metrics)
+                    .from("init")
+                    .end()
+                .define();
+
+        // @formatter:on
+    }
+
+    @Test
+    public void reportsStepsAndTimedGuards() {
+        List<String> reported = new ArrayList<>();
+        FsmInstrumentation instrumentation = new FsmInstrumentation() {
+            @Override
+            public void entered(int state, long nanos) {
+            }
+
+            @Override
+            public void exited(int state, long nanos) {
+            }
+
+            @Override
+            public void processed(int state, long nanos) {
+            }
+
+            @Override
+            public void transition(int from, int to) {
+            }
+
+            @Override
+            public void guardEvaluated(int state) {
+                reported.add("untimed guard " + state);
+            }
+
+            @Override
+            public void guardEvaluated(int state, long nanos) {
+                reported.add("guard " + state);
+            }
+
+            @Override
+            public boolean isTimingGuards() {
+                return true;
+            }
+
+            @Override
+            public void stepped(int from, int to, long nanos) {
+                reported.add("step " + from + " -> " + to);
+            }
+
+            @Override
+            public void failed(int state, RuntimeException exception) {
+            }
+        };
+
+        // @formatter:off
+
+        SimpleFsm<String> fsm = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withInstrumentation(instrumentation)
+                    .from("init")
+                        .withTransition()
+                            .to("finish")
+                            .checking((f, event) -> true)
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        fsm.process("stop");
+        fsm.process("done");
+        Assert.assertEquals(Arrays.asList("guard 0", "step 0 -> 1", "step 1 -> 1"), reported);
+    }
+
+    @Test
+    public void histogramBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1_000_000; value++) {
+            histogram.record(value);
+        }
+        Assert.assertEquals(1_000_000, histogram.getCount());
+        long median = histogram.getValueAt(0.5);
+        Assert.assertTrue(median >= 500_000 && median <= 500_000 * 1.125);
+        long p99 = histogram.getValueAt(0.99);
+        Assert.assertTrue(p99 >= 990_000 && p99 <= 990_000 * 1.125);
+
+        for (long value : new long[]{0, 15, 16, 17, 1000, 123_456_789, 1L << 39}) {
+            int bucket = LatencyHistogram.bucket(value);
+            Assert.assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            Assert.assertTrue(bucket == 0 || value > LatencyHistogram.upperBound(bucket - 1));
+        }
+        Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+}
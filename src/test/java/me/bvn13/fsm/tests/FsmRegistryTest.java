@@ -0,0 +1,247 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.State;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import me.bvn13.fsm.registry.FsmRegistry;
+import me.bvn13.fsm.registry.ShardMetrics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+public class FsmRegistryTest {
+
+    private final Map<Integer, List<String>> counted = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<String>> threads = new ConcurrentHashMap<>();
+    private FsmDefinition<SimpleFsm<String>, String> definition;
+
+    @Before
+    public void setUp() {
+        definition = CountingDefinition.<SimpleFsm<String>>of(SimpleFsm::new)
+                .processing((fsm, event) -> {
+                    Integer key = Integer.valueOf(event.split(":")[0]);
+                    threads.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+                    counted.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(event);
+                })
+                .define();
+    }
+
+    @Test
+    public void dispatchesEventsOfKeyInOrderToSameInstance() throws Exception {
+        try (FsmRegistry<Integer, SimpleFsm<String>, String> registry = new FsmRegistry<>(definition, 4)) {
+            for (int i = 0; i < 100; i++) {
+                for (int key = 0; key < 50; key++) {
+                    registry.dispatch(key, key + ":count");
+                }
+            }
+            for (int key = 0; key < 50; key++) {
+                Assert.assertEquals("finish", registry.submit(key, key + ":stop").toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+            }
+
+            int instances = 0;
+            long processed = 0;
+            for (ShardMetrics metrics : registry.getShardMetrics()) {
+                instances += metrics.getInstances();
+                processed += metrics.getProcessed();
+                Assert.assertEquals(0, metrics.getFailed());
+            }
+            Assert.assertEquals(50, instances);
+            Assert.assertEquals(50 * 101, processed);
+        }
+
+        for (int key = 0; key < 50; key++) {
+            List<String> events = counted.get(key);
+            Assert.assertEquals(101, events.size());
+            Assert.assertEquals(key + ":stop", events.get(100));
+            Assert.assertEquals(1, threads.get(key).size());
+        }
+    }
+
+    @Test
+    public void reportsFailures() throws Exception {
+        List<Integer> failedKeys = Collections.synchronizedList(new ArrayList<>());
+        try (FsmRegistry<Integer, SimpleFsm<String>, String> registry = new FsmRegistry<>(definition, 2, 16,
+                Executors.defaultThreadFactory(), (key, e) -> failedKeys.add(key))) {
+            registry.dispatch(1, "1:unknown");
+            try {
+                registry.submit(2, "2:unknown").toCompletableFuture().get(5, TimeUnit.SECONDS);
+                Assert.fail("Broken transition is expected");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof BrokenTransitionException);
+            }
+            Assert.assertEquals("counting", registry.submit(1, "1:count").toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+            Assert.assertEquals(2, registry.getShardMetrics().stream().mapToLong(ShardMetrics::getFailed).sum());
+        }
+        Assert.assertEquals(Collections.singletonList(1), failedKeys);
+    }
+
+    @Test
+    public void survivesFailuresOfInitialStateAndErrorHandler() throws Exception {
+        AtomicBoolean broken = new AtomicBoolean(true);
+
+        // @formatter:off
+
+        FsmDefinition<SimpleFsm<String>, String> failing = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from("init")
+                        .withBeforeHandler(fsm -> {
+                            if (broken.get()) {
+                                throw new IllegalStateException("Unable to initialize");
+                            }
+                        })
+                        .withTransition()
+                            .to("init")
+                        .endTransition()
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        try (FsmRegistry<Integer, SimpleFsm<String>, String> registry = new FsmRegistry<>(failing, 1, 16,
+                Executors.defaultThreadFactory(), (key, e) -> {
+                    throw new IllegalStateException("Broken error handler");
+                })) {
+            registry.dispatch(1, "event");
+            try {
+                registry.submit(2, "event").toCompletableFuture().get(5, TimeUnit.SECONDS);
+                Assert.fail("Failure of initial state is expected");
+            } catch (ExecutionException e) {
+                Assert.assertEquals("Unable to initialize", e.getCause().getMessage());
+            }
+            broken.set(false);
+            Assert.assertEquals("init", registry.submit(1, "event").toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+            ShardMetrics metrics = registry.getShardMetrics().get(0);
+            Assert.assertEquals(1, metrics.getInstances());
+            Assert.assertEquals(2, metrics.getFailed());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void survivesErrors() throws Exception {
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        try (FsmRegistry<Integer, SimpleFsm<String>, String> registry = new FsmRegistry<>(acting(event -> {
+            if (event.equals("error")) {
+                throw new AssertionError("Broken processor");
+            }
+        }), 1, 16, Executors.defaultThreadFactory(), (key, e) -> failures.add(e))) {
+            registry.dispatch(1, "error");
+            try {
+                registry.submit(2, "error").toCompletableFuture().get(5, TimeUnit.SECONDS);
+                Assert.fail("Error of processor is expected");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof AssertionError);
+            }
+            Assert.assertEquals("idle", registry.submit(1, "event").toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+            Assert.assertEquals(2, registry.getShardMetrics().get(0).getFailed());
+        }
+        Assert.assertEquals(1, failures.size());
+        Assert.assertTrue(failures.get(0) instanceof AssertionError);
+    }
+
+    @Test(timeout = 10_000)
+    public void rejectsDispatchingToOwnFullShard() throws Exception {
+        AtomicReference<FsmRegistry<Integer, SimpleFsm<String>, String>> self = new AtomicReference<>();
+        try (FsmRegistry<Integer, SimpleFsm<String>, String> registry = new FsmRegistry<>(acting(event -> {
+            if (event.equals("fan")) {
+                self.get().dispatch(1, "event");
+                self.get().dispatch(1, "event");
+            }
+        }), 1, 1, Executors.defaultThreadFactory(), (key, e) -> {
+        })) {
+            self.set(registry);
+            try {
+                registry.submit(1, "fan").toCompletableFuture().get(5, TimeUnit.SECONDS);
+                Assert.fail("Rejection of the event is expected");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            Assert.assertEquals("idle", registry.submit(1, "event").toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+        }
+    }
+
+    @Test
+    public void removesInstances() throws Exception {
+        try (FsmRegistry<Integer, SimpleFsm<String>, String> registry = new FsmRegistry<>(definition, 2)) {
+            registry.dispatch(1, "1:stop");
+            Assert.assertEquals("finish", registry.remove(1).toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+            Assert.assertNull(registry.remove(1).toCompletableFuture().get(5, TimeUnit.SECONDS));
+            Assert.assertEquals("counting", registry.submit(1, "1:count").toCompletableFuture().get(5, TimeUnit.SECONDS).getName());
+        }
+    }
+
+    @Test
+    public void completesEveryAcceptedEventWhileClosing() throws Exception {
+        FsmRegistry<Integer, SimpleFsm<String>, String> registry = new FsmRegistry<>(definition, 2, 4,
+                Executors.defaultThreadFactory(), (key, e) -> {
+                });
+        List<CompletableFuture<State<String>>> accepted = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int key = i;
+            Thread producer = new Thread(() -> {
+                try {
+                    while (true) {
+                        accepted.add(registry.submit(key, key + ":count").toCompletableFuture());
+                    }
+                } catch (RejectedExecutionException e) {
+                    // closed
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        Thread.sleep(50);
+        registry.close();
+        for (Thread producer : producers) {
+            producer.join(5000);
+            Assert.assertFalse(producer.isAlive());
+        }
+        for (CompletableFuture<State<String>> result : accepted) {
+            Assert.assertEquals("counting", result.get(5, TimeUnit.SECONDS).getName());
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectsEventsAfterClose() throws Exception {
+        FsmRegistry<Integer, SimpleFsm<String>, String> registry = new FsmRegistry<>(definition, 1);
+        registry.close();
+        registry.dispatch(1, "1:count");
+    }
+
+    private static FsmDefinition<SimpleFsm<String>, String> acting(Consumer<String> action) {
+
+        // @formatter:off
+
+        return Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from("idle")
+                        .withProcessor((fsm, event) -> action.accept(event))
+                        .withTransition()
+                            .to("idle")
+                        .endTransition()
+                    .end()
+                .define();
+
+        // @formatter:on
+    }
+
+}
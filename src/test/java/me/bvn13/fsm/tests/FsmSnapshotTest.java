@@ -0,0 +1,204 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.ConcurrentFsm;
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.FsmSnapshot;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.SnapshotPayload;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FsmSnapshotTest {
+
+    static class CountingFsm extends SimpleFsm<String> {
+        int counted;
+    }
+
+    static class CountingPayload implements SnapshotPayload<CountingFsm> {
+        @Override
+        public void write(CountingFsm fsm, ByteBuffer buffer) {
+            buffer.putInt(fsm.counted);
+        }
+
+        @Override
+        public void read(CountingFsm fsm, ByteBuffer buffer) {
+            fsm.counted = buffer.getInt();
+        }
+    }
+
+    private final AtomicInteger handled = new AtomicInteger();
+
+    private FsmDefinition<CountingFsm, String> define() {
+        return CountingDefinition.of(CountingFsm::new)
+                .startingInInit(fsm -> handled.incrementAndGet())
+                .enteringCounting(fsm -> handled.incrementAndGet())
+                .processing((fsm, event) -> fsm.counted++)
+                .define();
+    }
+
+    @Test
+    public void restoresInstances() {
+        FsmDefinition<CountingFsm, String> definition = define();
+        FsmSnapshot<CountingFsm, String> snapshot = new FsmSnapshot<>(definition, new CountingPayload());
+
+        CountingFsm initial = definition.create();
+        CountingFsm counting = definition.create();
+        counting.processAll(Arrays.asList("start", "count", "count"));
+        CountingFsm finished = definition.create();
+        finished.processAll(Arrays.asList("start", "stop", "done"));
+
+        ByteBuffer buffer = ByteBuffer.allocate(snapshot.bulkSize(3) + 3 * Integer.BYTES);
+        snapshot.writeAll(Arrays.asList(initial, counting, finished), buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+        buffer.flip();
+
+        handled.set(0);
+        List<CountingFsm> restored = new ArrayList<>();
+        Assert.assertEquals(3, snapshot.readAll(buffer, restored::add));
+        Assert.assertEquals(0, handled.get());
+
+        Assert.assertEquals("init", restored.get(0).getCurrentState().getName());
+        Assert.assertNull(restored.get(0).getPreviousState());
+        Assert.assertEquals("counting", restored.get(1).getCurrentState().getName());
+        Assert.assertEquals("counting", restored.get(1).getPreviousState().getName());
+        Assert.assertEquals(2, restored.get(1).counted);
+        Assert.assertFalse(restored.get(1).isDone());
+        Assert.assertEquals("finish", restored.get(2).getCurrentState().getName());
+        Assert.assertTrue(restored.get(2).isDone());
+
+        restored.get(1).process("stop");
+        Assert.assertEquals("finish", restored.get(1).getCurrentState().getName());
+        Assert.assertEquals(3, restored.get(1).counted);
+    }
+
+    @Test
+    public void writesFewBytes() {
+        FsmDefinition<CountingFsm, String> definition = define();
+        FsmSnapshot<CountingFsm, String> snapshot = new FsmSnapshot<>(definition);
+        CountingFsm fsm = definition.create();
+        fsm.process("start");
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        snapshot.write(fsm, buffer);
+        Assert.assertEquals(3, buffer.position());
+        Assert.assertEquals(3, snapshot.recordSize());
+        buffer.flip();
+
+        CountingFsm restored = snapshot.read(buffer);
+        Assert.assertEquals(fsm.getCurrentStateId(), restored.getCurrentStateId());
+        Assert.assertEquals(fsm.getPreviousStateId(), restored.getPreviousStateId());
+    }
+
+    @Test
+    public void restoresConcurrentFsm() {
+
+        // @formatter:off
+
+        FsmDefinition<ConcurrentFsm<String>, String> definition = Fsm
+                .<ConcurrentFsm<String>, String>from(ConcurrentFsm::new)
+                .withStates()
+                    .from("init")
+                        .withTransition()
+                            .to("finish")
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        FsmSnapshot<ConcurrentFsm<String>, String> snapshot = new FsmSnapshot<>(definition);
+        ConcurrentFsm<String> fsm = definition.create();
+        fsm.process("event");
+        ByteBuffer buffer = ByteBuffer.allocate(snapshot.recordSize());
+        snapshot.write(fsm, buffer);
+        buffer.flip();
+
+        ConcurrentFsm<String> restored = snapshot.read(buffer);
+        Assert.assertEquals("finish", restored.getCurrentState().getName());
+        Assert.assertEquals("init", restored.getPreviousState().getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSnapshotsOfAnotherDefinition() {
+        FsmDefinition<CountingFsm, String> definition = define();
+        FsmSnapshot<CountingFsm, String> snapshot = new FsmSnapshot<>(definition);
+        ByteBuffer buffer = ByteBuffer.allocate(snapshot.bulkSize(1));
+        snapshot.writeAll(Arrays.asList(definition.create()), buffer);
+        buffer.flip();
+
+        // @formatter:off
+
+        FsmDefinition<CountingFsm, String> another = Fsm
+                .<CountingFsm, String>from(CountingFsm::new)
+                .withStates()
+                    .from("init")
+                        .withTransition()
+                            .to("finish")
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        new FsmSnapshot<>(another).readAll(buffer, fsm -> {
+        });
+    }
+
+    @Test
+    public void rejectsSnapshotsOfRenamedStates() {
+        FsmDefinition<CountingFsm, String> definition = define();
+        FsmSnapshot<CountingFsm, String> snapshot = new FsmSnapshot<>(definition);
+        ByteBuffer buffer = ByteBuffer.allocate(snapshot.bulkSize(1));
+        snapshot.writeAll(Arrays.asList(definition.create()), buffer);
+        buffer.flip();
+
+        // @formatter:off
+
+        FsmDefinition<CountingFsm, String> another = Fsm
+                .<CountingFsm, String>from(CountingFsm::new)
+                .withStates()
+                    .from("init")
+                        .withTransition()
+                            .to("waiting")
+                        .endTransition()
+                    .end()
+                    .state("waiting")
+                        .withTransition()
+                            .to("finish")
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        try {
+            new FsmSnapshot<>(another).readAll(buffer, fsm -> {
+            });
+            Assert.fail("States of another definition must be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Snapshots of FSM with other states can not be restored by the definition", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSnapshotWithoutCurrentState() {
+        FsmSnapshot<CountingFsm, String> snapshot = new FsmSnapshot<>(define());
+        // no current state, no previous state, not done
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0, 0, 0});
+        snapshot.read(buffer);
+    }
+
+}
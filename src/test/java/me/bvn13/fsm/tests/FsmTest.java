@@ -1,11 +1,29 @@
 package me.bvn13.fsm.tests;
 
+import me.bvn13.fsm.ConcurrentFsm;
+import me.bvn13.fsm.EnumFsm;
 import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.ResolutionPolicy;
 import me.bvn13.fsm.SimpleFsm;
 import me.bvn13.fsm.State;
+import me.bvn13.fsm.exceptions.AmbiguousTransitionException;
+import me.bvn13.fsm.exceptions.BatchProcessingException;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import me.bvn13.fsm.exceptions.NotInitializedException;
+import me.bvn13.fsm.exceptions.TransitionMissedException;
+import com.sun.management.ThreadMXBean;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -334,10 +352,599 @@ public class FsmTest {
 
     }
 
+    @Test
+    public void sharedDefinition() {
+
+        // @formatter:off
+
+        FsmDefinition<NamedFsm, String> definition = Fsm
+                .<NamedFsm, String>from(NamedFsm::new)
+                .withStates()
+                    .from("init")
+                        .withProcessor((fsm, event) -> fsm.setName(event))
+                        .withTransition()
+                            .to("finish")
+                            .checking((fsm, event) -> "go".equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to("init")
+                            .checking((fsm, event) -> !"go".equals(event))
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        NamedFsm first = definition.create();
+        NamedFsm second = definition.create();
+
+        first.process("go");
+        second.process("wait");
+
+        Assert.assertEquals("finish", first.getCurrentState().getName());
+        Assert.assertEquals("init", second.getCurrentState().getName());
+        Assert.assertEquals("go", first.toString());
+        Assert.assertEquals("wait", second.toString());
+        Assert.assertSame(first.getCurrentState(), definition.getState("finish"));
+        Assert.assertSame(second.getCurrentState(), definition.getInitialState());
+        Assert.assertEquals("finish", definition.startingAt("finish").getCurrentState().getName());
+    }
+
+    @Test
+    public void compiledStateIds() {
+
+        // @formatter:off
+
+        FsmDefinition<NamedFsm, String> definition = Fsm
+                .<NamedFsm, String>from(NamedFsm::new)
+                .withStates()
+                    .from("init")
+                        .withTransition()
+                            .to("left")
+                            .checking((fsm, event) -> "left".equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to("right")
+                            .checking((fsm, event) -> "right".equals(event))
+                        .endTransition()
+                    .end()
+                    .finish("left")
+                    .end()
+                    .finish("right")
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        Assert.assertEquals(3, definition.getStateCount());
+        Assert.assertEquals(0, definition.getStateId("init"));
+        Assert.assertEquals(2, definition.getStateId("right"));
+        Assert.assertEquals(FsmDefinition.NO_STATE, definition.getStateId("unknown"));
+        Assert.assertSame(definition.getState("right"), definition.getState(2));
+
+        NamedFsm fsm = definition.create();
+        fsm.process("right");
+        Assert.assertEquals("right", fsm.getCurrentState().getName());
+        Assert.assertEquals("init", fsm.getPreviousState().getName());
+    }
+
+    @Test(expected = NotInitializedException.class)
+    public void transitionToUnknownState() {
+        Fsm
+                .<NamedFsm, String>from(NamedFsm::new)
+                .withStates()
+                .from("init")
+                .withTransition()
+                .to("unknown")
+                .endTransition()
+                .end()
+                .define();
+    }
+
+    @Test
+    public void processingDoesNotAllocate() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // @formatter:off
+
+        SimpleFsm<String> simpleFsm = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from("ping")
+                        .withTransition()
+                            .to("pong")
+                            .checking((fsm, event) -> "ball".equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to("finish")
+                            .checking((fsm, event) -> "stop".equals(event))
+                        .endTransition()
+                    .end()
+                    .state("pong")
+                        .withTransition()
+                            .to("ping")
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        for (int i = 0; i < 100_000; i++) {
+            simpleFsm.process("ball");
+        }
+        long threadId = Thread.currentThread().getId();
+        // the least of several rounds, as compiling the loop by JIT may allocate while it is being measured
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 1_000_000; i++) {
+                simpleFsm.process("ball");
+            }
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+
+        Assert.assertEquals("ping", simpleFsm.getCurrentState().getName());
+        Assert.assertTrue("Allocated " + allocated + " bytes by 1M events", allocated < 1024);
+    }
+
+    @Test
+    public void firstMatchResolution() {
+
+        AtomicInteger checks = new AtomicInteger(0);
+
+        // @formatter:off
+
+        FsmBuilder<SimpleFsm<String>, String, ?> builder = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from("init")
+                        .withTransition()
+                            .to("declared-first")
+                            .checking((fsm, event) -> checks.incrementAndGet() > 0)
+                        .endTransition()
+                        .withTransition()
+                            .to("prioritized")
+                            .checking((fsm, event) -> checks.incrementAndGet() > 0)
+                            .withPriority(1)
+                        .endTransition()
+                        .withTransition()
+                            .to("declared-last")
+                            .checking((fsm, event) -> checks.incrementAndGet() > 0)
+                        .endTransition()
+                    .end()
+                    .finish("declared-first")
+                    .end()
+                    .finish("prioritized")
+                    .end()
+                    .finish("declared-last")
+                    .end();
+
+        // @formatter:on
+
+        SimpleFsm<String> strict = builder.create();
+        try {
+            strict.process("");
+            Assert.fail("Ambiguous transition is expected");
+        } catch (AmbiguousTransitionException e) {
+            Assert.assertEquals(3, checks.get());
+            Assert.assertTrue(e.getMessage().endsWith("prioritized, declared-first, declared-last"));
+        }
+
+        checks.set(0);
+        SimpleFsm<String> firstMatch = builder.withResolutionPolicy(ResolutionPolicy.FIRST_MATCH).create();
+        firstMatch.process("");
+        Assert.assertEquals("prioritized", firstMatch.getCurrentState().getName());
+        Assert.assertEquals(1, checks.get());
+    }
+
+    @Test
+    public void compiledDispatch() {
+
+        // @formatter:off
+
+        FsmBuilder<SimpleFsm<String>, String, ?> builder = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withResolutionPolicy(ResolutionPolicy.FIRST_MATCH)
+                    .from("init")
+                        .withTransition()
+                            .to("guarded")
+                        .endTransition()
+                    .end()
+                    .state("guarded")
+                        .withTransition()
+                            .to("branching")
+                            .checking((fsm, event) -> "go".equals(event))
+                        .endTransition()
+                    .end()
+                    .state("branching")
+                        .withTransition()
+                            .to("init")
+                            .checking((fsm, event) -> "reset".equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to("dead-end")
+                            .checking((fsm, event) -> "stuck".equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to("finish")
+                        .endTransition()
+                    .end()
+                    .state("dead-end")
+                    .end()
+                    .finish("finish")
+                    .end();
+
+        // @formatter:on
+
+        FsmDefinition<SimpleFsm<String>, String> interpreted = builder.define();
+        FsmDefinition<SimpleFsm<String>, String> compiled = builder.withCompiledDispatch().define();
+        List<String> events = Arrays.asList("start", "go", "reset", "start", "go", "stop");
+        for (FsmDefinition<SimpleFsm<String>, String> definition : Arrays.asList(interpreted, compiled)) {
+            SimpleFsm<String> fsm = definition.create();
+            List<String> states = new ArrayList<>();
+            for (String event : events) {
+                fsm.process(event);
+                states.add(fsm.getCurrentState().getName());
+            }
+            Assert.assertEquals(Arrays.asList("guarded", "branching", "init", "guarded", "branching", "finish"), states);
+
+            SimpleFsm<String> broken = definition.startingAt("guarded");
+            try {
+                broken.process("wait");
+                Assert.fail("Broken transition is expected");
+            } catch (BrokenTransitionException e) {
+                Assert.assertEquals("guarded", broken.getCurrentState().getName());
+            }
+
+            SimpleFsm<String> stuck = definition.startingAt("branching");
+            stuck.process("stuck");
+            try {
+                stuck.process("anything");
+                Assert.fail("Missed transition is expected");
+            } catch (TransitionMissedException e) {
+                Assert.assertEquals("dead-end", stuck.getCurrentState().getName());
+            }
+        }
+    }
+
+    @Test
+    public void exclusiveGroupsAreDeterministic() {
+
+        AtomicInteger checks = new AtomicInteger(0);
+
+        // @formatter:off
+
+        FsmDefinition<SimpleFsm<String>, String> definition = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withDeterminismCheck()
+                    .from("init")
+                        .withTransition()
+                            .to("hello")
+                            .checking((fsm, event) -> checks.incrementAndGet() > 0 && "hello".equals(event))
+                            .inExclusiveGroup("command")
+                        .endTransition()
+                        .withTransition()
+                            .to("bye")
+                            .checking((fsm, event) -> checks.incrementAndGet() > 0 && "bye".equals(event))
+                            .inExclusiveGroup("command")
+                        .endTransition()
+                    .end()
+                    .state("hello")
+                        .withTransition()
+                            .to("bye")
+                        .endTransition()
+                    .end()
+                    .finish("bye")
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        Assert.assertTrue(definition.isDeterministic(definition.getStateId("init")));
+        Assert.assertTrue(definition.isDeterministic(definition.getStateId("hello")));
+
+        SimpleFsm<String> fsm = definition.create();
+        fsm.process("hello");
+        Assert.assertEquals("hello", fsm.getCurrentState().getName());
+        Assert.assertEquals(1, checks.get());
+    }
+
+    @Test(expected = TransitionMissedException.class)
+    public void determinismCheckRequiresTransitions() {
+        Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withDeterminismCheck()
+                .from("init")
+                .end()
+                .finish("finish")
+                .end()
+                .define();
+    }
+
+    @Test(expected = AmbiguousTransitionException.class)
+    public void determinismCheckRejectsMixedTransitions() {
+        Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withDeterminismCheck()
+                .from("init")
+                .withTransition().to("finish").endTransition()
+                .withTransition().to("init").checking((fsm, event) -> true).endTransition()
+                .end()
+                .finish("finish")
+                .end()
+                .define();
+    }
+
+    enum Phase {
+        INIT, PROCESSING, UNUSED, DONE
+    }
+
+    @Test
+    public void enumStates() {
+
+        AtomicBoolean enteredProcessing = new AtomicBoolean(false);
+
+        // @formatter:off
+
+        FsmDefinition<EnumFsm<Phase, String>, String> definition = Fsm
+                .<EnumFsm<Phase, String>, String>from(EnumFsm::new)
+                .withStates(Phase.class)
+                    .from(Phase.INIT)
+                        .withTransition()
+                            .to(Phase.PROCESSING)
+                        .endTransition()
+                    .end()
+                    .state(Phase.PROCESSING)
+                        .withBeforeHandler(fsm -> enteredProcessing.set(fsm.is(Phase.PROCESSING)))
+                        .withTransition()
+                            .to(Phase.DONE)
+                            .checking((fsm, event) -> fsm.getPrevious() == Phase.INIT)
+                        .endTransition()
+                    .end()
+                    .finish(Phase.DONE)
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        EnumFsm<Phase, String> fsm = definition.create();
+        Assert.assertSame(Phase.INIT, fsm.getCurrent());
+        Assert.assertNull(fsm.getPrevious());
+
+        fsm.process("");
+        fsm.process("");
+
+        Assert.assertTrue(enteredProcessing.get());
+        Assert.assertSame(Phase.DONE, fsm.getCurrent());
+        Assert.assertSame(Phase.PROCESSING, fsm.getPrevious());
+        Assert.assertEquals("DONE", fsm.getCurrentState().getName());
+        Assert.assertEquals(FsmDefinition.NO_STATE, definition.getStateId(Phase.UNUSED));
+        Assert.assertSame(Phase.PROCESSING, definition.startingAt(Phase.PROCESSING).getCurrent());
+    }
+
+    static class Login {
+    }
+
+    static class Logout {
+    }
+
+    @Test
+    public void triggeredTransitions() {
+
+        AtomicInteger checks = new AtomicInteger(0);
+
+        // @formatter:off
+
+        SimpleFsm<Object> simpleFsm = Fsm
+                .<SimpleFsm<Object>, Object>from(SimpleFsm::new)
+                .withStates()
+                    .from("anonymous")
+                        .withTransition()
+                            .to("authorized")
+                            .on(Login.class)
+                            .checking((fsm, event) -> checks.incrementAndGet() > 0)
+                        .endTransition()
+                        .withTransition()
+                            .to("finish")
+                            .on(Logout.class)
+                            .checking((fsm, event) -> checks.incrementAndGet() > 0)
+                        .endTransition()
+                        .withTransition()
+                            .to("anonymous")
+                            .checking((fsm, event) -> "ping".equals(event))
+                        .endTransition()
+                    .end()
+                    .state("authorized")
+                        .withTransition()
+                            .to("finish")
+                            .on(Logout.class)
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        simpleFsm.process("ping");
+        Assert.assertEquals("anonymous", simpleFsm.getCurrentState().getName());
+        Assert.assertEquals(0, checks.get());
+
+        simpleFsm.process(new Login());
+        Assert.assertEquals("authorized", simpleFsm.getCurrentState().getName());
+        Assert.assertEquals(1, checks.get());
+
+        try {
+            simpleFsm.process(new Login());
+            Assert.fail("Broken transition is expected");
+        } catch (BrokenTransitionException e) {
+            Assert.assertEquals("authorized", simpleFsm.getCurrentState().getName());
+        }
+        simpleFsm.process(new Logout());
+        Assert.assertEquals("finish", simpleFsm.getCurrentState().getName());
+    }
+
+    @Test
+    public void triggerExtractor() {
+
+        // @formatter:off
+
+        SimpleFsm<String> simpleFsm = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withTriggerExtractor(event -> event.split(":")[0])
+                    .from("init")
+                        .withTransition()
+                            .to("finish")
+                            .on("quit")
+                        .endTransition()
+                        .withTransition()
+                            .to("init")
+                            .on("say")
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        simpleFsm.process("say:hello");
+        Assert.assertEquals("init", simpleFsm.getCurrentState().getName());
+        simpleFsm.process("quit:now");
+        Assert.assertEquals("finish", simpleFsm.getCurrentState().getName());
+    }
+
+    @Test
+    public void concurrentProcessing() throws InterruptedException {
+
+        AtomicInteger entered = new AtomicInteger(0);
+
+        // @formatter:off
+
+        ConcurrentFsm<String> concurrentFsm = Fsm
+                .<ConcurrentFsm<String>, String>from(ConcurrentFsm::new)
+                .withStates()
+                    .from("red")
+                        .withBeforeHandler(fsm -> entered.incrementAndGet())
+                        .withTransition().to("green").endTransition()
+                    .end()
+                    .state("green")
+                        .withBeforeHandler(fsm -> entered.incrementAndGet())
+                        .withTransition().to("yellow").endTransition()
+                    .end()
+                    .state("yellow")
+                        .withBeforeHandler(fsm -> entered.incrementAndGet())
+                        .withTransition().to("red").endTransition()
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        int threads = 4;
+        int events = 30_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < events; i++) {
+                    concurrentFsm.process("");
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Assert.assertEquals(threads * events + 1, entered.get());
+        Assert.assertEquals("red", concurrentFsm.getCurrentState().getName());
+        Assert.assertEquals("yellow", concurrentFsm.getPreviousState().getName());
+        Assert.assertFalse(concurrentFsm.isDone());
+    }
+
+    @Test
+    public void batchProcessing() {
+        AtomicInteger counter = new AtomicInteger();
+        FsmDefinition<BatchCountingFsm, String> definition = CountingDefinition.of(BatchCountingFsm::new)
+                .processing((fsm, event) -> counter.incrementAndGet())
+                .define();
+
+        BatchCountingFsm fsm = definition.create();
+        String[] events = {"skipped", "count", "count", "stop", "finishing", "ignored"};
+        Assert.assertEquals(2, fsm.processAll(events, 1, 3));
+        Assert.assertEquals("counting", fsm.getCurrentState().getName());
+        Assert.assertEquals(2, fsm.processAll(Arrays.asList("stop", "finishing", "ignored")));
+        Assert.assertTrue(fsm.isDone());
+        Assert.assertEquals(0, fsm.processAll(events, 0, events.length));
+        Assert.assertEquals(3, counter.get());
+        Assert.assertEquals(Arrays.asList(2, 2), fsm.batches);
+
+        fsm = definition.create();
+        try {
+            fsm.processAll(Arrays.asList("count", "unknown", "count"));
+            Assert.fail("Broken transition is expected");
+        } catch (BatchProcessingException e) {
+            Assert.assertEquals(1, e.getProcessed());
+            Assert.assertTrue(e.getCause() instanceof BrokenTransitionException);
+        }
+        Assert.assertEquals(Arrays.asList(1), fsm.batches);
+
+        fsm = definition.create();
+        Iterator<String> source = Arrays.asList("count", "count").iterator();
+        try {
+            fsm.processAll(() -> new Iterator<String>() {
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public String next() {
+                    if (!source.hasNext()) {
+                        throw new IllegalStateException("Source is broken");
+                    }
+                    return source.next();
+                }
+            });
+            Assert.fail("Failure of the iterator is expected");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Source is broken", e.getMessage());
+        }
+        Assert.assertEquals(Arrays.asList(2), fsm.batches);
+        Assert.assertEquals("counting", fsm.getCurrentState().getName());
+    }
+
     static class Counter {
         final AtomicInteger before = new AtomicInteger(0);
         final AtomicInteger after = new AtomicInteger(0);
         final AtomicInteger process = new AtomicInteger(0);
     }
 
+    static class BatchCountingFsm extends SimpleFsm<String> {
+        final List<Integer> batches = new ArrayList<>();
+
+        @Override
+        protected void afterBatch(int processed) {
+            batches.add(processed);
+        }
+    }
+
 }
@@ -0,0 +1,166 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.ConcurrentFsm;
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.exceptions.NotInitializedException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class HierarchicalStateTest {
+
+    @Test
+    public void inheritsTransitionsAndCallsHandlersOfContainingStates() {
+        List<String> log = new ArrayList<>();
+        SimpleFsm<String> fsm = machine(SimpleFsm<String>::new, log).create();
+        Assert.assertEquals("idle", fsm.getCurrentState().getName());
+        Assert.assertEquals(Arrays.asList("enter root", "enter active", "enter idle"), log);
+
+        log.clear();
+        fsm.process("work");
+        Assert.assertEquals("busy", fsm.getCurrentState().getName());
+        Assert.assertEquals(Arrays.asList("exit idle", "enter busy"), log);
+
+        log.clear();
+        fsm.process("pause");
+        Assert.assertEquals("suspended", fsm.getCurrentState().getName());
+        Assert.assertEquals(Arrays.asList("exit busy", "exit active", "enter suspended"), log);
+
+        log.clear();
+        fsm.process("resume");
+        Assert.assertEquals("idle", fsm.getCurrentState().getName());
+        Assert.assertEquals(Arrays.asList("exit suspended", "enter active", "enter idle"), log);
+
+        log.clear();
+        fsm.process("cancel");
+        Assert.assertEquals("cancelled", fsm.getCurrentState().getName());
+        Assert.assertEquals(Arrays.asList("exit idle", "exit active", "exit root", "enter cancelled"), log);
+    }
+
+    @Test
+    public void ownTransitionsOverrideInherited() {
+        List<String> log = new ArrayList<>();
+        SimpleFsm<String> fsm = machine(SimpleFsm<String>::new, log).create();
+        fsm.process("work");
+        // "busy" declares its own transition to "suspended"
+        fsm.process("suspend");
+        Assert.assertEquals("suspended", fsm.getCurrentState().getName());
+        fsm.process("resume");
+        fsm.process("suspend");
+        Assert.assertEquals("idle", fsm.getCurrentState().getName());
+    }
+
+    @Test
+    public void concurrentFsmCallsHandlersOfContainingStates() {
+        List<String> log = new ArrayList<>();
+        ConcurrentFsm<String> fsm = machine(ConcurrentFsm<String>::new, log).create();
+        fsm.process("cancel");
+        Assert.assertEquals("cancelled", fsm.getCurrentState().getName());
+        Assert.assertEquals(Arrays.asList("enter root", "enter active", "enter idle", "exit idle", "exit active",
+                "exit root", "enter cancelled"), log);
+    }
+
+    @Test
+    public void containingStatesAreNeverCurrent() {
+        FsmDefinition<SimpleFsm<String>, String> definition = machine(SimpleFsm<String>::new, new ArrayList<>())
+                .withDeterminismCheck()
+                .define();
+        Assert.assertEquals("idle", definition.startingAt("active").getCurrentState().getName());
+        Assert.assertEquals("idle", definition.getInitialState().getName());
+    }
+
+    @Test
+    public void wrongNestingFailsBuilding() {
+        try {
+            Fsm.<SimpleFsm<String>, String>from(SimpleFsm::new).withStates()
+                    .from("a").withParent("b").withTransition().to("b").endTransition().end()
+                    .state("b").withParent("a").end()
+                    .define();
+            Assert.fail("Nesting into itself must fail");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().endsWith("is nested into itself"));
+        }
+        try {
+            Fsm.<SimpleFsm<String>, String>from(SimpleFsm::new).withStates()
+                    .from("a").withParent("unknown").withTransition().to("a").endTransition().end()
+                    .define();
+            Assert.fail("Unknown containing state must fail");
+        } catch (NotInitializedException e) {
+            Assert.assertEquals("Unable to find state 'unknown' containing state 'a'", e.getMessage());
+        }
+    }
+
+    private static <T extends Fsm> FsmBuilder<T, String, ?> machine(Supplier<T> supplier, List<String> log) {
+
+        // @formatter:off
+
+        return Fsm
+                .<T, String>from(supplier)
+                .withStates()
+                    .state("root")
+                        .withBeforeHandler(fsm -> log.add("enter root"))
+                        .withAfterHandler(fsm -> log.add("exit root"))
+                        .withTransition()
+                            .to("cancelled")
+                            .checking((fsm, event) -> "cancel".equals(event))
+                        .endTransition()
+                    .end()
+                    .from("active")
+                        .withParent("root")
+                        .withBeforeHandler(fsm -> log.add("enter active"))
+                        .withAfterHandler(fsm -> log.add("exit active"))
+                        .withTransition()
+                            .to("suspended")
+                            .checking((fsm, event) -> "pause".equals(event))
+                        .endTransition()
+                    .end()
+                    .state("idle")
+                        .withParent("active")
+                        .withBeforeHandler(fsm -> log.add("enter idle"))
+                        .withAfterHandler(fsm -> log.add("exit idle"))
+                        .withTransition()
+                            .to("busy")
+                            .checking((fsm, event) -> "work".equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to("idle")
+                            .checking((fsm, event) -> "suspend".equals(event))
+                        .endTransition()
+                    .end()
+                    .state("busy")
+                        .withParent("active")
+                        .withBeforeHandler(fsm -> log.add("enter busy"))
+                        .withAfterHandler(fsm -> log.add("exit busy"))
+                        .withTransition()
+                            .to("suspended")
+                            .checking((fsm, event) -> "pause".equals(event) || "suspend".equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to("idle")
+                            .checking((fsm, event) -> "done".equals(event))
+                        .endTransition()
+                    .end()
+                    .state("suspended")
+                        .withParent("root")
+                        .withBeforeHandler(fsm -> log.add("enter suspended"))
+                        .withAfterHandler(fsm -> log.add("exit suspended"))
+                        .withTransition()
+                            .to("active")
+                            .checking((fsm, event) -> "resume".equals(event))
+                        .endTransition()
+                    .end()
+                    .finish("cancelled")
+                        .withBeforeHandler(fsm -> log.add("enter cancelled"))
+                    .end();
+
+        // @formatter:on
+    }
+
+}
@@ -0,0 +1,114 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.ResolutionPolicy;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.StateBuilder;
+import me.bvn13.fsm.exceptions.AmbiguousTransitionException;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class KeyConditionTest {
+
+    @Test
+    public void choosesTransitionByKey() {
+        AtomicInteger extracted = new AtomicInteger(0);
+        Function<String, Integer> number = event -> {
+            extracted.incrementAndGet();
+            return Integer.valueOf(event);
+        };
+        FsmBuilder<SimpleFsm<String>, String, ?> builder = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates();
+        StateBuilder<SimpleFsm<String>, String, ?> dispatcher = builder.from("dispatcher");
+        for (int i = 0; i < 50; i++) {
+            dispatcher.withTransition().to("target" + i).when(number).equalsTo(i).endTransition();
+            builder.state("target" + i).withTransition().to("dispatcher").endTransition().end();
+        }
+        SimpleFsm<String> fsm = dispatcher.end().create();
+
+        for (int i = 0; i < 50; i++) {
+            fsm.process(String.valueOf(i));
+            Assert.assertEquals("target" + i, fsm.getCurrentState().getName());
+            fsm.process("back");
+        }
+        // extracted once per event of "dispatcher" state
+        Assert.assertEquals(50, extracted.get());
+
+        try {
+            fsm.process("50");
+            Assert.fail("Unknown key must not be taken");
+        } catch (BrokenTransitionException e) {
+            Assert.assertEquals("dispatcher", fsm.getCurrentState().getName());
+        }
+    }
+
+    @Test
+    public void checksOtherTransitionsAsUsual() {
+        Function<String, Character> first = event -> event.charAt(0);
+
+        // @formatter:off
+
+        FsmBuilder<SimpleFsm<String>, String, ?> builder = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from("init")
+                        .withTransition()
+                            .to("apple")
+                            .when(first).equalsTo('a')
+                        .endTransition()
+                        .withTransition()
+                            .to("banana")
+                            .when(first).equalsTo('b')
+                        .endTransition()
+                        .withTransition()
+                            .to("long")
+                            .checking((fsm, event) -> event.length() > 5)
+                        .endTransition()
+                        .withTransition()
+                            .to("cherry")
+                            .when(event -> event.charAt(event.length() - 1)).equalsTo('c')
+                        .endTransition()
+                    .end()
+                    .finish("apple")
+                    .end()
+                    .finish("banana")
+                    .end()
+                    .finish("long")
+                    .end()
+                    .finish("cherry")
+                    .end();
+
+        // @formatter:on
+
+        SimpleFsm<String> fsm = builder.create();
+        fsm.process("ab");
+        Assert.assertEquals("apple", fsm.getCurrentState().getName());
+
+        fsm = builder.create();
+        fsm.process("zzzzzz");
+        Assert.assertEquals("long", fsm.getCurrentState().getName());
+
+        fsm = builder.create();
+        fsm.process("xc");
+        Assert.assertEquals("cherry", fsm.getCurrentState().getName());
+
+        try {
+            builder.create().process("bananas");
+            Assert.fail("Key and condition both matching must be ambiguous");
+        } catch (AmbiguousTransitionException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("banana"));
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("long"));
+        }
+
+        fsm = builder.withResolutionPolicy(ResolutionPolicy.FIRST_MATCH).withCompiledDispatch().create();
+        fsm.process("bananas");
+        Assert.assertEquals("banana", fsm.getCurrentState().getName());
+    }
+
+}
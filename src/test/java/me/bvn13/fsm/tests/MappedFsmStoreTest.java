@@ -0,0 +1,173 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import me.bvn13.fsm.store.MappedFsmStore;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MappedFsmStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger created = new AtomicInteger();
+    private FsmDefinition<SimpleFsm<String>, String> definition;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = folder.getRoot().toPath().resolve("fsm.store");
+        definition = CountingDefinition.<SimpleFsm<String>>of(SimpleFsm::new)
+                .startingInInit(fsm -> created.incrementAndGet())
+                .define();
+    }
+
+    @Test
+    public void keepsStatesOfKeys() throws Exception {
+        try (MappedFsmStore<SimpleFsm<String>, String> store = new MappedFsmStore<>(definition, file, 1_000_000)) {
+            Assert.assertNull(store.getState(42));
+            Assert.assertEquals("counting", store.process(42, "start").getName());
+            Assert.assertEquals("counting", store.process(999_999, "start").getName());
+            Assert.assertEquals("finish", store.process(42, "stop").getName());
+            Assert.assertEquals(2, created.get());
+
+            Assert.assertEquals("counting", store.load(42).getPreviousState().getName());
+            Assert.assertFalse(store.load(42).isDone());
+            store.process(42, "done");
+            Assert.assertTrue(store.load(42).isDone());
+            Assert.assertFalse(store.load(999_999).isDone());
+            Assert.assertNull(store.getState(0));
+
+            store.remove(42);
+            Assert.assertNull(store.getState(42));
+        }
+    }
+
+    @Test
+    public void survivesReopening() throws Exception {
+        try (MappedFsmStore<SimpleFsm<String>, String> store = new MappedFsmStore<>(definition, file, 1000)) {
+            store.process(7, "start");
+            store.process(7, "count");
+        }
+        try (MappedFsmStore<SimpleFsm<String>, String> store = new MappedFsmStore<>(definition, file, 1000)) {
+            Assert.assertEquals("counting", store.getState(7).getName());
+            Assert.assertEquals("finish", store.process(7, "stop").getName());
+        }
+        Assert.assertEquals(1, created.get());
+    }
+
+    @Test
+    public void keepsRecordOnFailure() throws Exception {
+        try (MappedFsmStore<SimpleFsm<String>, String> store = new MappedFsmStore<>(definition, file, 10)) {
+            store.process(1, "start");
+            try {
+                store.process(1, "unknown");
+                Assert.fail("Broken transition is expected");
+            } catch (BrokenTransitionException e) {
+                Assert.assertEquals("counting", store.getState(1).getName());
+                Assert.assertEquals("init", store.load(1).getPreviousState().getName());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnotherCapacity() throws Exception {
+        new MappedFsmStore<>(definition, file, 10).close();
+        new MappedFsmStore<>(definition, file, 20).close();
+    }
+
+    @Test
+    public void rejectsDefinitionWithOtherStates() throws Exception {
+        try (MappedFsmStore<SimpleFsm<String>, String> store = new MappedFsmStore<>(definition, file, 10)) {
+            store.process(1, "start");
+        }
+
+        // @formatter:off
+
+        FsmDefinition<SimpleFsm<String>, String> renamed = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from("init")
+                        .withTransition()
+                            .to("waiting")
+                        .endTransition()
+                    .end()
+                    .state("waiting")
+                        .withTransition()
+                            .to("finish")
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        try {
+            new MappedFsmStore<>(renamed, file, 10).close();
+            Assert.fail("Definition with other states is expected to be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Store of FSM with other states can not be opened with the definition", e.getMessage());
+        }
+        try (MappedFsmStore<SimpleFsm<String>, String> store = new MappedFsmStore<>(definition, file, 10)) {
+            Assert.assertEquals("counting", store.getState(1).getName());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsKeysOutOfCapacity() throws Exception {
+        try (MappedFsmStore<SimpleFsm<String>, String> store = new MappedFsmStore<>(definition, file, 10)) {
+            store.process(10, "start");
+        }
+    }
+
+    @Test
+    public void recordsTransitionsOfProcessedKeyOnly() throws Exception {
+
+        // @formatter:off
+
+        FsmDefinition<SimpleFsm<String>, String> recorded = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withFlightRecorder(8)
+                    .from("init")
+                        .withTransition()
+                            .to("counting")
+                        .endTransition()
+                    .end()
+                    .state("counting")
+                        .withTransition()
+                            .to("counting")
+                            .checking((fsm, event) -> "count".equals(event))
+                        .endTransition()
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        try (MappedFsmStore<SimpleFsm<String>, String> store = new MappedFsmStore<>(recorded, file, 16)) {
+            store.process(1, "start");
+            store.process(1, "count");
+            store.process(1, "count");
+            store.process(2, "start");
+            try {
+                store.process(2, "unknown");
+                Assert.fail("Broken transition is expected");
+            } catch (BrokenTransitionException e) {
+                // transitions of key 1 are not attached as the history of key 2
+                Assert.assertEquals(0, e.getSuppressed().length);
+                Assert.assertEquals(0, store.load(2).getFlightRecorder().size());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,228 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.exceptions.BrokenTransitionException;
+import me.bvn13.fsm.region.RegionFsm;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+public class RegionFsmTest {
+
+    @Test
+    public void everyRegionProcessesEveryEvent() {
+        RegionFsm<String> order = new RegionFsm<>(regions(new CountDownLatch(0)));
+        Assert.assertEquals(Arrays.asList("payment", "shipping"), order.getRegionNames());
+
+        order.process("paid");
+        Assert.assertEquals("paid", order.getCurrentState("payment").getName());
+        Assert.assertEquals("waiting", order.getCurrentState("shipping").getName());
+        Assert.assertFalse(order.isDone());
+
+        order.process("shipped");
+        Map<String, String> states = new LinkedHashMap<>();
+        order.getCurrentStates().forEach((region, state) -> states.put(region, state.getName()));
+        Assert.assertEquals("{payment=paid, shipping=shipped}", states.toString());
+
+        order.process("any");
+        Assert.assertTrue(order.isDone());
+    }
+
+    @Test
+    public void independentRegionsAreProcessedInParallel() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            // each region waits for the other one to start processing
+            CountDownLatch started = new CountDownLatch(2);
+            Map<String, Fsm<?, String>> regions = regions(started);
+            RegionFsm<String> order = new RegionFsm<>(regions, regions.keySet(), pool);
+            order.process("paid");
+            Assert.assertEquals("paid", order.getCurrentState("payment").getName());
+            Assert.assertEquals("waiting", order.getCurrentState("shipping").getName());
+        } finally {
+            pool.shutdown();
+            Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void failuresAreRethrownAfterEveryRegion() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Map<String, Fsm<?, String>> regions = regions(new CountDownLatch(0));
+            regions.put("strict", Fsm.<SimpleFsm<String>, String>from(SimpleFsm::new)
+                    .withStates()
+                    .from("init")
+                    .withTransition().to("done").checking((f, event) -> "ok".equals(event)).endTransition()
+                    .end()
+                    .finish("done")
+                    .end()
+                    .create());
+            Set<String> independent = new HashSet<>(Collections.singletonList("payment"));
+            RegionFsm<String> order = new RegionFsm<>(regions, independent, pool);
+            try {
+                order.process("paid");
+                Assert.fail("Region must fail");
+            } catch (BrokenTransitionException e) {
+                Assert.assertEquals("paid", order.getCurrentState("payment").getName());
+                Assert.assertEquals("init", order.getCurrentState("strict").getName());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void independentRegionsNeedPool() {
+        Map<String, Fsm<?, String>> regions = regions(new CountDownLatch(0));
+        new RegionFsm<>(regions, regions.keySet(), null);
+    }
+
+    @Test(timeout = 10_000)
+    public void handlersReadStatesOfTheWhole() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            AtomicReference<RegionFsm<String>> whole = new AtomicReference<>();
+            List<String> read = Collections.synchronizedList(new ArrayList<>());
+            Map<String, Fsm<?, String>> regions = new LinkedHashMap<>();
+            regions.put("first", acting(event -> read.add("first " + whole.get().getCurrentState("second").getName())).create());
+            regions.put("second", acting(event -> read.add("second " + whole.get().isDone())).create());
+            regions.put("third", acting(event -> read.add("third " + whole.get().getCurrentStates().size())).create());
+            whole.set(new RegionFsm<>(regions, new HashSet<>(Arrays.asList("first", "second")), pool));
+            whole.get().process("event");
+            Assert.assertEquals(new HashSet<>(Arrays.asList("first idle", "second false", "third 3")), new HashSet<>(read));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void handlersMustNotProcessEvents() {
+        AtomicReference<RegionFsm<String>> whole = new AtomicReference<>();
+        Map<String, Fsm<?, String>> regions = new LinkedHashMap<>();
+        regions.put("nested", acting(event -> whole.get().process("nested")).create());
+        whole.set(new RegionFsm<>(regions));
+        try {
+            whole.get().process("event");
+            Assert.fail("Nested processing must fail");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Event must not be processed while processing another one", e.getMessage());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void joinsEveryRegionBeforeRethrowingFirstFailure() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            AtomicInteger processed = new AtomicInteger();
+            Map<String, Fsm<?, String>> regions = new LinkedHashMap<>();
+            regions.put("error", acting(event -> {
+                throw new AssertionError("first");
+            }).create());
+            regions.put("slow", acting(event -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                processed.incrementAndGet();
+            }).create());
+            regions.put("calling", acting(event -> {
+            }).create());
+            regions.put("failing", acting(event -> {
+                throw new IllegalStateException("second");
+            }).create());
+            // "error" and "slow" are forked, the rest are processed by the calling thread
+            RegionFsm<String> whole = new RegionFsm<>(regions, new HashSet<>(Arrays.asList("error", "slow", "calling")), pool);
+            try {
+                whole.process("event");
+                Assert.fail("Failure is expected");
+            } catch (AssertionError e) {
+                Assert.assertEquals("first", e.getMessage());
+                Assert.assertEquals(1, e.getSuppressed().length);
+                Assert.assertEquals("second", e.getSuppressed()[0].getMessage());
+                Assert.assertEquals(1, processed.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static FsmBuilder<SimpleFsm<String>, String, ?> acting(Consumer<String> action) {
+
+        // @formatter:off
+
+        return Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from("idle")
+                        .withProcessor((fsm, event) -> action.accept(event))
+                        .withTransition()
+                            .to("idle")
+                        .endTransition()
+                    .end();
+
+        // @formatter:on
+    }
+
+    private static Map<String, Fsm<?, String>> regions(CountDownLatch started) {
+        FsmDefinition<SimpleFsm<String>, String> payment = region("pending", "paid", started);
+        FsmDefinition<SimpleFsm<String>, String> shipping = region("waiting", "shipped", started);
+        Map<String, Fsm<?, String>> regions = new LinkedHashMap<>();
+        regions.put("payment", payment.create());
+        regions.put("shipping", shipping.create());
+        return regions;
+    }
+
+    private static FsmDefinition<SimpleFsm<String>, String> region(String initial,
+                                                                  String finish,
+                                                                  CountDownLatch started) {
+
+        // @formatter:off
+
+        return Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from(initial)
+                        .withProcessor((fsm, event) -> {
+                            started.countDown();
+                            try {
+                                Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+                            } catch (InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        })
+                        .withTransition()
+                            .to(finish)
+                            .checking((fsm, event) -> finish.equals(event))
+                        .endTransition()
+                        .withTransition()
+                            .to(initial)
+                            .checking((fsm, event) -> !finish.equals(event))
+                        .endTransition()
+                    .end()
+                    .finish(finish)
+                    .end()
+                .define();
+
+        // @formatter:on
+    }
+
+}
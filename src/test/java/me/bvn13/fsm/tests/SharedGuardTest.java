@@ -0,0 +1,178 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.ConcurrentFsm;
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmBuilder;
+import me.bvn13.fsm.Guard;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.exceptions.NotInitializedException;
+import me.bvn13.fsm.metrics.FsmMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SharedGuardTest {
+
+    @Test
+    public void checksEveryGuardOncePerEvent() {
+
+        AtomicInteger hello = new AtomicInteger(0);
+        AtomicInteger polite = new AtomicInteger(0);
+
+        // @formatter:off
+
+        SimpleFsm<String> fsm = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withGuard("hello", (f, event) -> hello.incrementAndGet() > 0 && event.startsWith("hello"))
+                .withGuard("polite", (f, event) -> polite.incrementAndGet() > 0 && event.endsWith("please"))
+                    .from("greeting")
+                        .withTransition()
+                            .to("hello")
+                            .checking(Guard.and(Guard.named("hello"), Guard.not(Guard.named("polite"))))
+                        .endTransition()
+                        .withTransition()
+                            .to("finish")
+                            .checking(Guard.and(Guard.named("hello"), Guard.named("polite")))
+                        .endTransition()
+                        .withTransition()
+                            .to("greeting")
+                            .checking(Guard.not(Guard.or(Guard.named("hello"), Guard.named("polite"))))
+                        .endTransition()
+                    .end()
+                    .state("hello")
+                        .withTransition()
+                            .to("greeting")
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        fsm.process("good morning");
+        Assert.assertEquals("greeting", fsm.getCurrentState().getName());
+        fsm.process("hello");
+        Assert.assertEquals("hello", fsm.getCurrentState().getName());
+        fsm.process("back");
+        fsm.process("hello, please");
+        Assert.assertEquals("finish", fsm.getCurrentState().getName());
+        // 3 events of "greeting" state
+        Assert.assertEquals(3, hello.get());
+        Assert.assertEquals(3, polite.get());
+    }
+
+    @Test
+    public void concurrentFsmChecksGuards() {
+
+        // @formatter:off
+
+        ConcurrentFsm<String> fsm = Fsm
+                .<ConcurrentFsm<String>, String>from(ConcurrentFsm::new)
+                .withStates()
+                .withGuard("hello", (f, event) -> event.startsWith("hello"))
+                    .from("greeting")
+                        .withTransition()
+                            .to("hello")
+                            .checking(Guard.named("hello"))
+                        .endTransition()
+                        .withTransition()
+                            .to("greeting")
+                            .checking(Guard.not(Guard.named("hello")))
+                        .endTransition()
+                    .end()
+                    .finish("hello")
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        fsm.process("good morning");
+        Assert.assertEquals("greeting", fsm.getCurrentState().getName());
+        fsm.process("hello");
+        Assert.assertEquals("hello", fsm.getCurrentState().getName());
+    }
+
+    @Test
+    public void unknownGuardFailsBuilding() {
+        FsmBuilder<SimpleFsm<String>, String, ?> builder = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .from("init")
+                .withTransition().to("finish").checking(Guard.named("unknown")).endTransition()
+                .end()
+                .finish("finish")
+                .end();
+        try {
+            builder.define();
+            Assert.fail("Unknown guard must fail building");
+        } catch (NotInitializedException e) {
+            Assert.assertEquals("Unable to find guard 'unknown'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void guardsAreLimited() {
+        FsmBuilder<SimpleFsm<String>, String, ?> builder = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withGuard("same", (f, event) -> true);
+        try {
+            builder.withGuard("same", (f, event) -> false);
+            Assert.fail("Duplicate guard must fail");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Guard 'same' already exists", e.getMessage());
+        }
+        for (int i = 1; i < 32; i++) {
+            builder.withGuard("guard" + i, (f, event) -> true);
+        }
+        try {
+            builder.withGuard("guard32", (f, event) -> true);
+            Assert.fail("33rd guard must fail");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("No more than 32 guards may be shared", e.getMessage());
+        }
+    }
+
+    @Test
+    public void countsEvaluationsOfSharedGuards() {
+        FsmMetrics metrics = new FsmMetrics("greeter");
+
+        // @formatter:off
+
+        SimpleFsm<String> fsm = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                .withInstrumentation(metrics)
+                .withGuard("hello", (f, event) -> event.startsWith("hello"))
+                    .from("greeting")
+                        .withTransition()
+                            .to("finish")
+                            .checking(Guard.named("hello"))
+                        .endTransition()
+                        .withTransition()
+                            .to("greeting")
+                            .checking(Guard.not(Guard.named("hello")))
+                        .endTransition()
+                        .withTransition()
+                            .to("ignored")
+                            .checking((f, event) -> false)
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                    .finish("ignored")
+                    .end()
+                .create();
+
+        // @formatter:on
+
+        fsm.process("good morning");
+        fsm.process("hello");
+        // the shared guard once per event and the other condition
+        Assert.assertEquals(4, metrics.getGuardEvaluations(fsm.getDefinition().getStateId("greeting")));
+    }
+
+}
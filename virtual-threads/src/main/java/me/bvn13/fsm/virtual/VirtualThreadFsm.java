@@ -0,0 +1,81 @@
+package me.bvn13.fsm.virtual;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.async.AsyncFsm;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * <b>Processing of FSM events on virtual threads</b>
+ * </p>
+ *
+ * <p>
+ * Every FSM instance gets its own event loop which runs on a virtual thread while there are events in its mailbox,
+ * so processors and handlers may block (read a database, call a service) in plain style: a blocked processor parks
+ * its virtual thread only, not a platform one. Hundreds of thousands of instances may be processed at once without
+ * tuning any thread pool.
+ *
+ * <pre>
+ *  {@code
+ *  AsyncFsm<SimpleFsm<String>, String> async = VirtualThreadFsm.of(definition.create());
+ *  async.submit("event");
+ *  }
+ * </pre>
+ *
+ * Requires Java 21+.
+ */
+public final class VirtualThreadFsm {
+
+    private static final ThreadFactory THREADS = Thread.ofVirtual().name("fsm-virtual-", 0).factory();
+    private static final Executor EXECUTOR = task -> THREADS.newThread(task).start();
+
+    private VirtualThreadFsm() {
+    }
+
+    /**
+     * Returns executor starting every task on a new virtual thread
+     *
+     * @return executor
+     */
+    public static Executor executor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Returns factory of virtual threads, e.g. for workers of {@link me.bvn13.fsm.registry.FsmRegistry}
+     *
+     * @return thread factory
+     */
+    public static ThreadFactory threadFactory() {
+        return THREADS;
+    }
+
+    /**
+     * Wraps FSM instance to process its events on virtual threads
+     *
+     * @param fsm FSM instance
+     * @param <T> the type of FSM inherited class
+     * @param <E> the type of Events
+     * @return asynchronous FSM
+     */
+    public static <T extends Fsm, E> AsyncFsm<T, E> of(T fsm) {
+        return new AsyncFsm<>(fsm, EXECUTOR);
+    }
+
+    /**
+     * Wraps FSM instance to process its events on virtual threads
+     *
+     * @param fsm       FSM instance
+     * @param capacity  maximum number of events waiting to be processed
+     * @param batchSize maximum number of events processed by the event loop before it yields its virtual thread
+     * @param <T>       the type of FSM inherited class
+     * @param <E>       the type of Events
+     * @return asynchronous FSM
+     */
+    public static <T extends Fsm, E> AsyncFsm<T, E> of(T fsm, int capacity, int batchSize) {
+        return new AsyncFsm<>(fsm, EXECUTOR, capacity, batchSize);
+    }
+
+}
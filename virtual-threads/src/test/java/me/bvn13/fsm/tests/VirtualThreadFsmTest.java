@@ -0,0 +1,65 @@
+package me.bvn13.fsm.tests;
+
+import me.bvn13.fsm.Fsm;
+import me.bvn13.fsm.FsmDefinition;
+import me.bvn13.fsm.SimpleFsm;
+import me.bvn13.fsm.State;
+import me.bvn13.fsm.async.AsyncFsm;
+import me.bvn13.fsm.virtual.VirtualThreadFsm;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class VirtualThreadFsmTest {
+
+    @Test
+    public void processesBlockingHandlersOfManyMachines() throws Exception {
+        AtomicBoolean platform = new AtomicBoolean();
+
+        // @formatter:off
+
+        FsmDefinition<SimpleFsm<String>, String> definition = Fsm
+                .<SimpleFsm<String>, String>from(SimpleFsm::new)
+                .withStates()
+                    .from("init")
+                        .withProcessor((fsm, event) -> {
+                            if (!Thread.currentThread().isVirtual()) {
+                                platform.set(true);
+                            }
+                            try {
+                                Thread.sleep(100);
+                            } catch (InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        })
+                        .withTransition()
+                            .to("finish")
+                        .endTransition()
+                    .end()
+                    .finish("finish")
+                    .end()
+                .define();
+
+        // @formatter:on
+
+        List<CompletableFuture<State<String>>> results = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            AsyncFsm<SimpleFsm<String>, String> async = VirtualThreadFsm.of(definition.create());
+            results.add(async.submit("event").toCompletableFuture());
+        }
+        for (CompletableFuture<State<String>> result : results) {
+            Assert.assertEquals("finish", result.get(30, TimeUnit.SECONDS).getName());
+        }
+
+        Assert.assertFalse(platform.get());
+        // 10 000 sequential sleeps would take 1000 seconds
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started) < 30);
+    }
+
+}